@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides whether a reload reads the entries from etcd or reuses the last read membership.
+ * <p>
+ * After a membership change every reload reads. While the membership stays the same the time between two reads
+ * doubles, starting at {@link #MIN_INTERVAL_MILLIS}, up to the maximum interval. If the read latency rises above
+ * twice its long term average, reads back off to the maximum interval right away. Every interval is shortened by a
+ * random jitter, so nodes that changed their interval at the same time do not read at the same time.
+ *
+ * @since 4.0.1
+ */
+public class AdaptiveRefresh {
+
+    static final long MIN_INTERVAL_MILLIS = 1_000;
+
+    private static final double FAST_WEIGHT = 0.3;
+    private static final double SLOW_WEIGHT = 0.02;
+    private static final double SLOW_FACTOR = 2;
+    private static final double MIN_SLOW_LATENCY_MILLIS = 10;
+
+    private final LongSupplier clock;
+
+    private long intervalMillis;
+    private long nextReadMillis;
+    private double fastLatencyMillis = -1;
+    private double slowLatencyMillis = -1;
+
+    public AdaptiveRefresh() {
+        this(System::currentTimeMillis);
+    }
+
+    AdaptiveRefresh(final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public synchronized boolean shouldRead() {
+        return clock.getAsLong() >= nextReadMillis;
+    }
+
+    /**
+     * @param changed           whether the read changed the membership
+     * @param latencyMillis     the duration of the read
+     * @param maxIntervalMillis the maximum time between two reads
+     * @param jitter            the maximum fraction the interval is shortened by
+     */
+    public synchronized void readCompleted(final boolean changed, final long latencyMillis, final long maxIntervalMillis, final double jitter) {
+        updateLatency(latencyMillis);
+        if (isEtcdSlow()) {
+            intervalMillis = maxIntervalMillis;
+        } else if (changed) {
+            intervalMillis = 0;
+        } else {
+            intervalMillis = Math.min(Math.max(intervalMillis * 2, MIN_INTERVAL_MILLIS), maxIntervalMillis);
+        }
+        final long jitterMillis = (long) (ThreadLocalRandom.current().nextDouble() * jitter * intervalMillis);
+        nextReadMillis = clock.getAsLong() + intervalMillis - jitterMillis;
+    }
+
+    public synchronized long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    private void updateLatency(final long latencyMillis) {
+        if (fastLatencyMillis < 0) {
+            fastLatencyMillis = latencyMillis;
+            slowLatencyMillis = latencyMillis;
+            return;
+        }
+        fastLatencyMillis += FAST_WEIGHT * (latencyMillis - fastLatencyMillis);
+        slowLatencyMillis += SLOW_WEIGHT * (latencyMillis - slowLatencyMillis);
+    }
+
+    private boolean isEtcdSlow() {
+        return fastLatencyMillis > MIN_SLOW_LATENCY_MILLIS && fastLatencyMillis > SLOW_FACTOR * slowLatencyMillis;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Stops requests to etcd after a number of failures in a row. Once the open time passed a single trial request is
+ * let through, its success closes the breaker again, its failure keeps it open for another open time. A trial that
+ * did not finish within {@link #TRIAL_TIMEOUT_MILLIS}, e.g. a hanging request without read or write timeout, is given
+ * up and the next request becomes the new trial.
+ *
+ * @since 4.0.1
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    static final long TRIAL_TIMEOUT_MILLIS = 30_000;
+
+    private enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final LongSupplier clock;
+
+    private int threshold;
+    private long openMillis;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openUntilMillis;
+    private long trialStartedMillis;
+
+    public CircuitBreaker() {
+        this(System::currentTimeMillis);
+    }
+
+    CircuitBreaker(final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @param threshold  the number of failures in a row that opens the breaker, 0 never opens it
+     * @param openMillis the time the breaker stays open
+     */
+    public synchronized void configure(final int threshold, final long openMillis) {
+        this.threshold = threshold;
+        this.openMillis = openMillis;
+        if (threshold == 0) {
+            state = State.CLOSED;
+            failures = 0;
+        }
+    }
+
+    /**
+     * @return whether a request may be sent
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        final long nowMillis = clock.getAsLong();
+        switch (state) {
+            case OPEN:
+                if (nowMillis < openUntilMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialStartedMillis = nowMillis;
+                return true;
+            default:
+                // only the trial request is let through, unless it hangs
+                if (nowMillis - trialStartedMillis < TRIAL_TIMEOUT_MILLIS) {
+                    return false;
+                }
+                logger.debug("Etcd trial request did not finish within {} ms, sending a new one.", TRIAL_TIMEOUT_MILLIS);
+                trialStartedMillis = nowMillis;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("Etcd is reachable again, resuming requests.");
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    /**
+     * @return whether the failure opened the breaker
+     */
+    public synchronized boolean onFailure() {
+        failures++;
+        if (threshold == 0 || state == State.OPEN || (state == State.CLOSED && failures < threshold)) {
+            return false;
+        }
+        state = State.OPEN;
+        openUntilMillis = clock.getAsLong() + openMillis;
+        logger.warn("{} Etcd requests failed in a row, no requests are sent for {} ms.", failures, openMillis);
+        return true;
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+}
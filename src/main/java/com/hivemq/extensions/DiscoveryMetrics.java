@@ -0,0 +1,156 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import io.grpc.Status;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics of the Etcd discovery extension. The metrics are kept in an own registry and added to the HiveMQ
+ * metric registry as a {@link MetricSet} when the extension starts, all names start with {@link #PREFIX}.
+ * Only metrics that exist at that time are added, so all metrics are created up front.
+ *
+ * @since 4.0.1
+ */
+public class DiscoveryMetrics implements MetricSet {
+
+    public static final String PREFIX = "com.hivemq.extensions.etcd-discovery.";
+
+    public static final String PUT = "put";
+    public static final String RANGE = "range";
+    public static final String DELETE = "delete";
+    public static final String TXN = "txn";
+    public static final String LEASE_REVOKE = "lease-revoke";
+
+    private static final List<String> OPERATIONS = List.of(PUT, RANGE, DELETE, TXN, LEASE_REVOKE);
+
+    private final MetricRegistry registry = new MetricRegistry();
+    private final AtomicInteger discoveredNodes = new AtomicInteger();
+
+    private final Timer initTimer = registry.timer(PREFIX + "callback.init.time");
+    private final Timer reloadTimer = registry.timer(PREFIX + "callback.reload.time");
+    private final Timer destroyTimer = registry.timer(PREFIX + "callback.destroy.time");
+    private final Timer warmUpTimer = registry.timer(PREFIX + "connection.warm-up.time");
+    private final Counter expiredEntriesRemoved = registry.counter(PREFIX + "expired-entries.removed.count");
+    private final Counter configReloads = registry.counter(PREFIX + "config.reload.count");
+    private final Histogram rangeResponseBytes = registry.histogram(PREFIX + "etcd.range.response.bytes");
+    private final Counter circuitBreakerOpened = registry.counter(PREFIX + "etcd.circuit-breaker.opened.count");
+
+    public DiscoveryMetrics() {
+        registry.register(PREFIX + "nodes.discovered.current", (Gauge<Integer>) discoveredNodes::get);
+        for (final String operation : OPERATIONS) {
+            registry.timer(PREFIX + "etcd." + operation + ".time");
+            registry.counter(PREFIX + "etcd." + operation + ".error.count");
+            registry.counter(PREFIX + "etcd." + operation + ".timeout.count");
+            registry.counter(PREFIX + "etcd." + operation + ".retry.count");
+            registry.counter(PREFIX + "etcd." + operation + ".rejected.count");
+            registry.counter(PREFIX + "etcd." + operation + ".shed.count");
+        }
+    }
+
+    @NotNull
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return registry.getMetrics();
+    }
+
+    @NotNull
+    public Timer getInitTimer() {
+        return initTimer;
+    }
+
+    @NotNull
+    public Timer getReloadTimer() {
+        return reloadTimer;
+    }
+
+    @NotNull
+    public Timer getDestroyTimer() {
+        return destroyTimer;
+    }
+
+    @NotNull
+    public Timer getWarmUpTimer() {
+        return warmUpTimer;
+    }
+
+    public void setDiscoveredNodes(final int nodes) {
+        discoveredNodes.set(nodes);
+    }
+
+    public void expiredEntriesRemoved(final long entries) {
+        expiredEntriesRemoved.inc(entries);
+    }
+
+    public void configReloaded() {
+        configReloads.inc();
+    }
+
+    public void rangeResponseReceived(final int bytes) {
+        rangeResponseBytes.update(bytes);
+    }
+
+    /**
+     * Records the latency of an etcd operation and counts it as error or timeout if it fails.
+     */
+    @NotNull
+    public <T> CompletableFuture<T> time(@NotNull final String operation, @NotNull final CompletableFuture<T> future) {
+        final Timer.Context context = registry.timer(PREFIX + "etcd." + operation + ".time").time();
+        return future.whenComplete((result, throwable) -> {
+            context.stop();
+            if (throwable != null) {
+                operationFailed(operation, throwable);
+            }
+        });
+    }
+
+    public void operationRetried(@NotNull final String operation) {
+        registry.counter(PREFIX + "etcd." + operation + ".retry.count").inc();
+    }
+
+    public void operationRejected(@NotNull final String operation) {
+        registry.counter(PREFIX + "etcd." + operation + ".rejected.count").inc();
+    }
+
+    public void operationShed(@NotNull final String operation) {
+        registry.counter(PREFIX + "etcd." + operation + ".shed.count").inc();
+    }
+
+    public void circuitBreakerOpened() {
+        circuitBreakerOpened.inc();
+    }
+
+    public void operationFailed(@NotNull final String operation, @NotNull final Throwable throwable) {
+        final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (Status.fromThrowable(cause).getCode() == Status.Code.DEADLINE_EXCEEDED) {
+            registry.counter(PREFIX + "etcd." + operation + ".timeout.count").inc();
+        } else {
+            registry.counter(PREFIX + "etcd." + operation + ".error.count").inc();
+        }
+    }
+}
@@ -2,85 +2,592 @@ package com.hivemq.extensions;
 
 import com.google.common.io.ByteSource;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
 import com.hivemq.extensions.config.ConfigurationReader;
+import com.hivemq.extensions.config.DiscoveryKeys;
 import com.hivemq.extensions.config.EtcdConfig;
+import com.hivemq.extensions.config.EtcdEndpoints;
+import com.hivemq.extensions.jfr.ConfigurationLoadEvent;
+import com.hivemq.extensions.jfr.EtcdOperationEvent;
+import com.ibm.etcd.api.Compare;
+import com.ibm.etcd.api.DeleteRangeRequest;
 import com.ibm.etcd.api.KeyValue;
-import com.ibm.etcd.api.RangeResponse;
+import com.ibm.etcd.api.PutRequest;
+import com.ibm.etcd.api.RangeRequest;
+import com.ibm.etcd.api.RequestOp;
+import com.ibm.etcd.api.ResponseOp;
+import com.ibm.etcd.api.TxnRequest;
 import com.ibm.etcd.client.KvStoreClient;
 import com.ibm.etcd.client.kv.KvClient;
+import com.ibm.etcd.client.lease.LeaseClient;
+import com.ibm.etcd.client.lease.PersistentLease;
+import io.grpc.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static com.ibm.etcd.client.KeyUtils.bs;
 
 public class EtcdClient {
     private static Logger logger = LoggerFactory.getLogger(EtcdClient.class);
 
+    private static final String LEASE_GRANT = "lease-grant";
+    /**
+     * Every key takes a compare and a delete, which stays within the default limit of 128 operations per transaction
+     * of etcd (--max-txn-ops).
+     */
+    static final int MAX_TXN_KEYS = 64;
+
     private ConfigurationReader configurationReader;
-    private EtcdConfig etcdConfig;
-    private KvClient client;
+    private final DiscoveryMetrics metrics;
+    private final RequestExecutor requestExecutor;
+    private final Supplier<? extends Executor> extensionExecutorSupplier;
+    private volatile EtcdConfig etcdConfig;
+    private KvStoreClient storeClient;
+    private volatile KvClient client;
+    private volatile PrefixReader prefixReader;
+    private PersistentLease lease;
+    private KvStoreClient retiredStoreClient;
+    private PersistentLease retiredLease;
+    private volatile long janitorLeaseId;
+    private MembershipCache membershipCache;
 
     public EtcdClient(@NotNull final ConfigurationReader configurationReader) {
+        this(configurationReader, new DiscoveryMetrics());
+    }
+
+    public EtcdClient(@NotNull final ConfigurationReader configurationReader, @NotNull final DiscoveryMetrics metrics) {
+        this(configurationReader, metrics, () -> {
+            throw new IllegalStateException("No extension executor available.");
+        });
+    }
+
+    /**
+     * @param extensionExecutorSupplier supplies the executor etcd responses are handled on if use-extension-executor is set
+     */
+    public EtcdClient(@NotNull final ConfigurationReader configurationReader, @NotNull final DiscoveryMetrics metrics,
+                      @NotNull final Supplier<? extends Executor> extensionExecutorSupplier) {
         this.configurationReader = configurationReader;
+        this.metrics = metrics;
+        this.requestExecutor = new RequestExecutor(metrics);
+        this.extensionExecutorSupplier = extensionExecutorSupplier;
+    }
+
+    /**
+     * Loads the configuration and connects to etcd. If the connection settings changed since the last call a new
+     * connection is built, requests are switched over to it and the old connection is closed. With lease based
+     * registration the old connection and its lease are kept until {@link #retirePreviousConnection()}, so the own
+     * entry stays in etcd until it was written with a lease of the new connection.
+     *
+     * @return whether a new connection was built
+     */
+    public synchronized boolean createOrUpdate() {
+        final ConfigurationLoadEvent event = new ConfigurationLoadEvent();
+        event.begin();
+        try {
+            update(event);
+            event.success = true;
+            return event.connectionBuilt;
+        } finally {
+            event.commit();
+        }
     }
 
-    public void createOrUpdate() {
+    private void update(@NotNull final ConfigurationLoadEvent event) {
         final EtcdConfig newEtcdConfig = configurationReader.readConfiguration();
         if (newEtcdConfig == null) {
             throw new IllegalStateException("Configuration of the Etcd discovery extension couldn't be loaded.");
         }
+        if (newEtcdConfig == etcdConfig && storeClient != null) {
+            return;
+        }
+        event.changed = true;
+        if (storeClient == null || !getConnectionSettings(newEtcdConfig).equals(getConnectionSettings(etcdConfig))) {
+            final KvStoreClient oldStoreClient = storeClient;
+            final KvStoreClient newStoreClient = buildClient(newEtcdConfig);
+            event.connectionBuilt = true;
+            if (oldStoreClient != null) {
+                closeMembershipCache();
+                retirePreviousConnection();
+                if (lease != null) {
+                    // revoking the lease now would remove the own entry until the next heartbeat
+                    retiredStoreClient = oldStoreClient;
+                    retiredLease = lease;
+                    lease = null;
+                    janitorLeaseId = 0;
+                }
+            }
+            this.storeClient = newStoreClient;
+            this.client = newStoreClient.getKvClient();
+            this.prefixReader = new PrefixReader(client, requestExecutor, metrics);
+            if (oldStoreClient != null) {
+                if (retiredStoreClient != oldStoreClient) {
+                    closeInBackground(oldStoreClient);
+                }
+                logger.info("Etcd connection settings changed, switched to a new connection.");
+            }
+        }
+        requestExecutor.configure(newEtcdConfig);
         this.etcdConfig = newEtcdConfig;
+        metrics.configReloaded();
         logger.trace("Loaded configuration successfully.");
-        if (client == null) {
-            KvStoreClient client;
-            if (etcdConfig.getTls()) {
-                if (etcdConfig.getCAPath().equals("")) {
-                    logger.debug("Using system certificates for certificate verification");
-                    client = com.ibm.etcd.client.EtcdClient.forEndpoint(etcdConfig.getEndpoint(), etcdConfig.getPort()).build();
-                } else {
-                    logger.debug("Using custom CA for certificate verification");
-                    try {
-                        File file = new File(etcdConfig.getCAPath());
-                        ByteSource cert = Files.asByteSource(file);
-                        client = com.ibm.etcd.client.EtcdClient.forEndpoint(etcdConfig.getEndpoint(), etcdConfig.getPort()).withCaCert(cert).build();
-                    } catch (IOException e) {
-                        logger.error("Could not read etcd CA file: "+e);
-                        client = null;
-                    }
+    }
+
+    /**
+     * Connects to etcd ahead of the first discovery: the configuration and CA file are read, the endpoints resolved
+     * and the connection established by a request that only counts the discovery key. With lease based registration
+     * the lease is granted as well.
+     *
+     * @param executor the executor the configuration is loaded on
+     */
+    @NotNull
+    public CompletableFuture<Void> warmUp(@NotNull final Executor executor) {
+        final long startNanos = System.nanoTime();
+        return CompletableFuture.runAsync(this::createOrUpdate, executor).thenCompose(ignored -> {
+            final ByteString key = bs(DiscoveryKeys.getClusterPrefix(etcdConfig));
+            final CompletableFuture<Void> countFuture = requestExecutor.execute(DiscoveryMetrics.RANGE, RequestLimiter.Priority.READ, () -> client.get(key).countOnly().async())
+                    .thenApply(response -> null);
+            return etcdConfig.getUseLease() ? CompletableFuture.allOf(countFuture, getOrCreateLease()) : countFuture;
+        }).whenComplete((ignored, throwable) -> {
+            final long durationNanos = System.nanoTime() - startNanos;
+            metrics.getWarmUpTimer().update(durationNanos, TimeUnit.NANOSECONDS);
+            if (throwable == null) {
+                logger.info("Connected to etcd in {} ms.", TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            } else {
+                logger.warn("Could not connect to etcd ahead of the first discovery. {}", throwable.toString());
+            }
+        });
+    }
+
+    /**
+     * Builds a client for all configured endpoints. Requests are spread round robin over the endpoints
+     * with a ready connection, so a failing etcd member is skipped until it is reachable again.
+     * <p>
+     * By default etcd-java starts its own event loop and callback threads. Their number can be limited with
+     * channel-threads, and with use-extension-executor responses are handled on the extension executor of HiveMQ.
+     */
+    @NotNull
+    private KvStoreClient buildClient(@NotNull final EtcdConfig etcdConfig) {
+        final List<String> endpoints = EtcdEndpoints.parse(etcdConfig.getEndpoint(), etcdConfig.getPort());
+        if (endpoints.isEmpty()) {
+            throw new IllegalStateException("No etcd endpoint configured.");
+        }
+        logger.debug("Connecting to etcd endpoints {}", endpoints);
+        final com.ibm.etcd.client.EtcdClient.Builder builder = com.ibm.etcd.client.EtcdClient.forEndpoints(String.join(",", endpoints));
+        if (etcdConfig.getTls()) {
+            if (etcdConfig.getCAPath().equals("")) {
+                logger.debug("Using system certificates for certificate verification");
+            } else {
+                logger.debug("Using custom CA for certificate verification");
+                try {
+                    File file = new File(etcdConfig.getCAPath());
+                    ByteSource cert = Files.asByteSource(file);
+                    builder.withCaCert(cert);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Could not read etcd CA file: " + e);
                 }
+            }
+        } else {
+            builder.withPlainText();
+        }
+        if (etcdConfig.getChannelThreads() > 0) {
+            builder.withThreadCount(etcdConfig.getChannelThreads());
+        }
+        if (etcdConfig.getMaxInboundMessageSize() > 0) {
+            builder.withMaxInboundMessageSize(etcdConfig.getMaxInboundMessageSize());
+        }
+        if (etcdConfig.getUseExtensionExecutor()) {
+            builder.withUserExecutor(extensionExecutorSupplier.get());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Settings that require a new connection when changed.
+     */
+    @NotNull
+    private static List<Object> getConnectionSettings(@NotNull final EtcdConfig etcdConfig) {
+        return List.of(etcdConfig.getEndpoint(), etcdConfig.getPort(), etcdConfig.getTls(), etcdConfig.getCAPath(),
+                etcdConfig.getChannelThreads(), etcdConfig.getMaxInboundMessageSize(), etcdConfig.getUseExtensionExecutor());
+    }
+
+    /**
+     * Closing may block until the channel terminated, a daemon thread keeps it from delaying the caller.
+     */
+    @NotNull
+    private static CompletableFuture<Void> closeInBackground(@NotNull final KvStoreClient storeClient) {
+        return CompletableFuture.runAsync(() -> closeClient(storeClient), runnable -> {
+            final Thread thread = new Thread(runnable, "etcd-discovery-close");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    private static void closeClient(@NotNull final KvStoreClient storeClient) {
+        try {
+            storeClient.close();
+        } catch (final Exception ex) {
+            logger.warn("Could not close etcd connection. {}", ex.toString());
+        }
+    }
+
+    /**
+     * Returns the id of the lease the own entry is attached to. The lease is granted on first use with a ttl of
+     * the configured expiration and kept alive in the background until {@link #revokeLease()} is called.
+     * The id changes if etcd had to grant a new lease after the old one expired.
+     */
+    @NotNull
+    public synchronized CompletableFuture<Long> getOrCreateLease() {
+        if (lease == null) {
+            final int ttl = Math.toIntExact(etcdConfig.getExpirationInSeconds());
+            final EtcdOperationEvent event = new EtcdOperationEvent();
+            event.begin();
+            lease = storeClient.getLeaseClient().maintain().minTtl(ttl).start();
+            logger.debug("Requested etcd lease with a ttl of {} seconds.", ttl);
+            toCompletableFuture(lease).whenComplete((leaseId, throwable) -> RequestExecutor.commit(event, LEASE_GRANT, 0,
+                    throwable == null ? EtcdOperationEvent.SUCCESS : EtcdOperationEvent.ERROR, null));
+        }
+        // the future only carries the first granted id
+        if (lease.isDone() && lease.getLeaseId() != 0) {
+            return CompletableFuture.completedFuture(lease.getLeaseId());
+        }
+        final CompletableFuture<Long> leaseFuture = toCompletableFuture(lease);
+        // the lease keeps trying in the background, only the caller stops waiting
+        final long timeoutMillis = etcdConfig.getWriteTimeoutInMillis();
+        return timeoutMillis > 0 ? leaseFuture.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS) : leaseFuture;
+    }
+
+    public long getLeaseId() {
+        return lease == null ? 0 : lease.getLeaseId();
+    }
+
+    /**
+     * Stops the keep alive of the lease and revokes it, so etcd removes the own entry and the janitor key right away
+     * instead of after the ttl.
+     *
+     * @return a future that completes when etcd revoked the lease, it never fails
+     */
+    @NotNull
+    public synchronized CompletableFuture<Void> revokeLease() {
+        if (lease == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final PersistentLease revokedLease = lease;
+        lease = null;
+        janitorLeaseId = 0;
+        return revoke(revokedLease, storeClient.getLeaseClient());
+    }
+
+    /**
+     * Revokes the lease of the connection replaced by the last {@link #createOrUpdate()} and closes that connection.
+     * Called once the own entry was written with a lease of the new connection, or wasn't registered.
+     */
+    @NotNull
+    public synchronized CompletableFuture<Void> retirePreviousConnection() {
+        if (retiredStoreClient == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final KvStoreClient closedStoreClient = retiredStoreClient;
+        final PersistentLease revokedLease = retiredLease;
+        retiredStoreClient = null;
+        retiredLease = null;
+        return revoke(revokedLease, closedStoreClient.getLeaseClient())
+                .thenCompose(ignored -> closeInBackground(closedStoreClient));
+    }
+
+    @NotNull
+    private CompletableFuture<Void> revoke(@NotNull final PersistentLease revokedLease, @NotNull final LeaseClient leaseClient) {
+        final long leaseId = revokedLease.getLeaseId();
+        try {
+            revokedLease.close();
+        } catch (final Exception ex) {
+            logger.warn("Could not stop the keep alive of etcd lease {}. {}", leaseId, ex.toString());
+        }
+        if (leaseId == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return requestExecutor.execute(DiscoveryMetrics.LEASE_REVOKE, RequestLimiter.Priority.REGISTRATION, () -> leaseClient.revoke(leaseId)).handle((response, throwable) -> {
+            if (throwable != null && Status.fromThrowable(throwable).getCode() != Status.Code.NOT_FOUND) {
+                logger.warn("Could not revoke etcd lease {}, it expires after its ttl. {}", leaseId, throwable.toString());
+            } else {
+                logger.debug("Revoked etcd lease {}.", leaseId);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Closes the connection to etcd: the watch of the membership is cancelled, the keep alive of the lease stopped
+     * and the channel shut down. Waits at most the given time for the channel and its threads to terminate.
+     * A later {@link #createOrUpdate()} connects again.
+     *
+     * @param timeoutMillis the maximum time to wait, 0 waits without limit
+     */
+    public synchronized void close(final long timeoutMillis) {
+        closeMembershipCache();
+        final CompletableFuture<Void> retireFuture = retirePreviousConnection();
+        revokeLease();
+        if (storeClient == null) {
+            return;
+        }
+        final KvStoreClient closedStoreClient = storeClient;
+        storeClient = null;
+        final CompletableFuture<Void> closeFuture = CompletableFuture.allOf(retireFuture, closeInBackground(closedStoreClient));
+        try {
+            if (timeoutMillis > 0) {
+                closeFuture.get(timeoutMillis, TimeUnit.MILLISECONDS);
             } else {
-                client = com.ibm.etcd.client.EtcdClient.forEndpoint(etcdConfig.getEndpoint(), etcdConfig.getPort()).withPlainText().build();
+                closeFuture.get();
             }
-            this.client = client.getKvClient();
+            logger.debug("Closed etcd connection.");
+        } catch (final TimeoutException ex) {
+            logger.warn("Etcd connection did not close within {} ms, continuing shutdown.", timeoutMillis);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException ex) {
+            logger.warn("Could not close etcd connection. {}", ex.getCause().toString());
         }
     }
 
+    /**
+     * Elects this node as janitor, the only node deleting expired entries. The janitor key next to the discovery key
+     * is created with the lease of this node, so leadership moves to another node once that lease lapses.
+     *
+     * @return whether this node is the janitor
+     */
+    @NotNull
+    public CompletableFuture<Boolean> acquireJanitor(@NotNull final String ownClusterId) {
+        return getOrCreateLease().thenCompose(leaseId -> {
+            if (leaseId == janitorLeaseId) {
+                return CompletableFuture.completedFuture(true);
+            }
+            final ByteString janitorKey = bs(DiscoveryKeys.getJanitorKey(etcdConfig));
+            final TxnRequest txnRequest = TxnRequest.newBuilder()
+                    .addCompare(Compare.newBuilder()
+                            .setKey(janitorKey)
+                            .setTarget(Compare.CompareTarget.CREATE)
+                            .setResult(Compare.CompareResult.EQUAL)
+                            .setCreateRevision(0))
+                    .addSuccess(RequestOp.newBuilder()
+                            .setRequestPut(PutRequest.newBuilder().setKey(janitorKey).setValue(bs(ownClusterId)).setLease(leaseId)))
+                    .addFailure(RequestOp.newBuilder()
+                            .setRequestRange(RangeRequest.newBuilder().setKey(janitorKey)))
+                    .build();
+
+            return requestExecutor.execute(DiscoveryMetrics.TXN, RequestLimiter.Priority.CLEANUP, () -> client.txn(txnRequest)).thenApply(txnResponse -> {
+                if (txnResponse.getSucceeded()) {
+                    janitorLeaseId = leaseId;
+                    logger.info("This node is now responsible for deleting expired Etcd entries.");
+                    return true;
+                }
+                final List<KeyValue> janitorKeyValues = txnResponse.getResponses(0).getResponseRange().getKvsList();
+                return !janitorKeyValues.isEmpty() && janitorKeyValues.get(0).getLease() == leaseId;
+            });
+        });
+    }
+
+    public boolean isCircuitBreakerOpen() {
+        return requestExecutor.isCircuitBreakerOpen();
+    }
+
+    @NotNull
+    public File getExtensionHomeFolder() {
+        return configurationReader.getExtensionHomeFolder();
+    }
+
+    @NotNull
+    public DiscoveryMetrics getMetrics() {
+        return metrics;
+    }
+
     @NotNull
     public EtcdConfig getEtcdConfig() {
         return etcdConfig;
     }
 
-    public void saveObject(@NotNull final String objectKey, @NotNull final String content) {
-        client.put(bs(objectKey), bs(content)).sync();
+    @NotNull
+    public CompletableFuture<Void> saveObject(@NotNull final String objectKey, @NotNull final ByteString content) {
+        return requestExecutor.execute(DiscoveryMetrics.PUT, RequestLimiter.Priority.REGISTRATION, () -> client.put(bs(objectKey), content).async()).thenApply(response -> null);
+    }
+
+    @NotNull
+    public CompletableFuture<Void> saveObject(@NotNull final String objectKey, @NotNull final ByteString content, final long leaseId) {
+        return requestExecutor.execute(DiscoveryMetrics.PUT, RequestLimiter.Priority.REGISTRATION, () -> client.put(bs(objectKey), content, leaseId).async()).thenApply(response -> null);
+    }
+
+    /**
+     * Checks with a count only read whether the key exists, the value is not transferred.
+     */
+    @NotNull
+    public CompletableFuture<Boolean> existsObject(@NotNull final String objectKey) {
+        return requestExecutor.execute(DiscoveryMetrics.RANGE, RequestLimiter.Priority.REGISTRATION, () -> client.get(bs(objectKey)).countOnly().async())
+                .thenApply(response -> response.getCount() > 0);
+    }
+
+    @NotNull
+    public CompletableFuture<Void> deleteObject(@NotNull final String objectKey) {
+        return requestExecutor.execute(DiscoveryMetrics.DELETE, RequestLimiter.Priority.REGISTRATION, () -> client.delete(bs(objectKey)).async()).thenApply(response -> null);
     }
 
-    public void deleteObject(@NotNull final String objectKey) {
-        client.delete(bs(objectKey)).sync();
+    /**
+     * Deletes all given keys in transactions of at most {@link #MAX_TXN_KEYS} keys, sent one after another. Every
+     * delete is guarded by the mod revision the key had when it was read, so an entry that has been written again in
+     * the meantime is kept. As a failed guard rejects the whole transaction, its failure branch reads the current mod
+     * revisions and the unchanged keys are deleted with one more guarded transaction.
+     *
+     * @param objectKeysWithModRevision the keys to delete mapped to their expected mod revision
+     */
+    @NotNull
+    public CompletableFuture<Void> deleteObjects(@NotNull final Map<String, Long> objectKeysWithModRevision) {
+        final List<Map<String, Long>> chunks = new ArrayList<>();
+        Map<String, Long> chunk = new LinkedHashMap<>();
+        for (final Map.Entry<String, Long> objectKey : objectKeysWithModRevision.entrySet()) {
+            if (chunk.size() == MAX_TXN_KEYS) {
+                chunks.add(chunk);
+                chunk = new LinkedHashMap<>();
+            }
+            chunk.put(objectKey.getKey(), objectKey.getValue());
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        // sequential, parallel cleanup requests would be shed by the request limiter
+        CompletableFuture<Void> deleteFuture = CompletableFuture.completedFuture(null);
+        for (final Map<String, Long> chunkToDelete : chunks) {
+            deleteFuture = deleteFuture.thenCompose(ignored -> deleteChunk(chunkToDelete));
+        }
+        return deleteFuture;
     }
 
-    public List<String> getObjects(@NotNull final String objectKey) {
-        RangeResponse rr = client.get(bs(objectKey)).asPrefix().sync();
-        List<String> nodeStrings = new ArrayList<>();
-        rr.getKvsList().forEach(kvs -> {
-            nodeStrings.add(kvs.getValue().toStringUtf8());
+    @NotNull
+    private CompletableFuture<Void> deleteChunk(@NotNull final Map<String, Long> objectKeysWithModRevision) {
+        if (objectKeysWithModRevision.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final TxnRequest.Builder txnRequestBuilder = TxnRequest.newBuilder();
+        objectKeysWithModRevision.forEach((objectKey, modRevision) -> addGuardedDelete(txnRequestBuilder, objectKey, modRevision));
+        final TxnRequest txnRequest = txnRequestBuilder.build();
+
+        return requestExecutor.execute(DiscoveryMetrics.TXN, RequestLimiter.Priority.CLEANUP, () -> client.txn(txnRequest)).thenCompose(txnResponse -> {
+            if (txnResponse.getSucceeded()) {
+                metrics.expiredEntriesRemoved(objectKeysWithModRevision.size());
+                return CompletableFuture.completedFuture(null);
+            }
+            final Map<String, Long> unchangedObjectKeys = new LinkedHashMap<>();
+            for (final ResponseOp responseOp : txnResponse.getResponsesList()) {
+                for (final KeyValue keyValue : responseOp.getResponseRange().getKvsList()) {
+                    final String objectKey = keyValue.getKey().toStringUtf8();
+                    final Long modRevision = objectKeysWithModRevision.get(objectKey);
+                    if (modRevision != null && modRevision == keyValue.getModRevision()) {
+                        unchangedObjectKeys.put(objectKey, modRevision);
+                    }
+                }
+            }
+            logger.debug("{} of {} expired Etcd entries changed since they were read, they are kept.",
+                    objectKeysWithModRevision.size() - unchangedObjectKeys.size(), objectKeysWithModRevision.size());
+            // every failed guard removes at least one key, so this ends
+            return unchangedObjectKeys.size() < objectKeysWithModRevision.size()
+                    ? deleteChunk(unchangedObjectKeys) : CompletableFuture.completedFuture(null);
         });
-        return nodeStrings;
+    }
+
+    /**
+     * Passes the entries below the key to the consumer as they are read, without keeping them. With read probes the
+     * values are left out if no entry changed since the last read, see {@link PrefixReader}.
+     */
+    @NotNull
+    public CompletableFuture<Void> getObjects(@NotNull final String objectKey, @NotNull final Consumer<KeyValue> consumer) {
+        if (etcdConfig.getUseWatch()) {
+            return getMembershipCache(objectKey).getEntries().thenAccept(keyValues -> keyValues.forEach(consumer));
+        }
+        closeMembershipCache();
+        return prefixReader.read(bs(objectKey), etcdConfig, consumer);
+    }
+
+    /**
+     * @return the entries below the key, see {@link #getObjects(String, Consumer)}
+     */
+    @NotNull
+    public CompletableFuture<List<KeyValue>> getObjects(@NotNull final String objectKey) {
+        final List<KeyValue> keyValues = new ArrayList<>();
+        return getObjects(objectKey, keyValues::add).thenApply(ignored -> keyValues);
+    }
+
+    /**
+     * Makes the next {@link #getObjects(String, Consumer)} read the values of all entries again.
+     */
+    public void invalidateReads() {
+        final PrefixReader reader = prefixReader;
+        if (reader != null) {
+            reader.invalidate();
+        }
+    }
+
+    private static void addGuardedDelete(@NotNull final TxnRequest.Builder txnRequest, @NotNull final String objectKey, final long modRevision) {
+        txnRequest.addCompare(Compare.newBuilder()
+                .setKey(bs(objectKey))
+                .setTarget(Compare.CompareTarget.MOD)
+                .setResult(Compare.CompareResult.EQUAL)
+                .setModRevision(modRevision));
+        txnRequest.addSuccess(RequestOp.newBuilder()
+                .setRequestDeleteRange(DeleteRangeRequest.newBuilder().setKey(bs(objectKey))));
+        txnRequest.addFailure(RequestOp.newBuilder()
+                .setRequestRange(RangeRequest.newBuilder().setKey(bs(objectKey)).setKeysOnly(true)));
+    }
+
+    /**
+     * The cache is replaced by {@link #createOrUpdate()} and {@link #close(long)}, so it is only accessed while holding
+     * the lock.
+     */
+    @NotNull
+    private synchronized MembershipCache getMembershipCache(@NotNull final String objectKey) {
+        if (membershipCache == null || !membershipCache.getPrefix().equals(bs(objectKey))) {
+            closeMembershipCache();
+            membershipCache = new MembershipCache(client, prefixReader, bs(objectKey), etcdConfig.getRangePageSize());
+        }
+        return membershipCache;
+    }
+
+    private synchronized void closeMembershipCache() {
+        if (membershipCache != null) {
+            membershipCache.close();
+            membershipCache = null;
+        }
+    }
+
+    @NotNull
+    static <T> CompletableFuture<T> toCompletableFuture(@NotNull final ListenableFuture<T> listenableFuture) {
+        final CompletableFuture<T> completableFuture = new CompletableFuture<>();
+        Futures.addCallback(listenableFuture, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(final T result) {
+                completableFuture.complete(result);
+            }
+
+            @Override
+            public void onFailure(@NotNull final Throwable throwable) {
+                completableFuture.completeExceptionally(throwable);
+            }
+        }, MoreExecutors.directExecutor());
+        return completableFuture;
     }
 
 }
@@ -43,8 +43,10 @@ public class EtcdDiscoveryExtensionMain implements ExtensionMain {
             final ConfigurationReader configurationReader = new ConfigurationReader(extensionStartInput.getExtensionInformation());
 
             etcdDiscoveryCallback = new EtcdDiscoveryCallback(configurationReader);
+            etcdDiscoveryCallback.warmUp();
 
             Services.clusterService().addDiscoveryCallback(etcdDiscoveryCallback);
+            Services.metricRegistry().registerAll(etcdDiscoveryCallback.getMetrics());
 
             logger.debug("Registered Etcd discovery callback successfully.");
         } catch (final Exception ex) {
@@ -57,7 +59,13 @@ public class EtcdDiscoveryExtensionMain implements ExtensionMain {
     public void extensionStop(@NotNull final ExtensionStopInput extensionStopInput, @NotNull final ExtensionStopOutput extensionStopOutput) {
 
         if (etcdDiscoveryCallback != null) {
-            Services.clusterService().removeDiscoveryCallback(etcdDiscoveryCallback);
+            try {
+                Services.clusterService().removeDiscoveryCallback(etcdDiscoveryCallback);
+                Services.metricRegistry().removeMatching((name, metric) -> name.startsWith(DiscoveryMetrics.PREFIX));
+            } finally {
+                // the connection threads would otherwise outlive the extension, e.g. on every hot reload
+                etcdDiscoveryCallback.close();
+            }
         }
     }
 }
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Runs a beat (e.g. the refresh of the own etcd entry) on its own schedule, independent of the discovery callbacks.
+ * <p>
+ * The interval is shortened by a random jitter so the nodes of a cluster do not write at the same time and a beat is
+ * never later than the interval. A failed beat is retried with an exponential backoff
+ * starting at {@link #MIN_RETRY_DELAY_MILLIS}, capped at the interval.
+ *
+ * @since 4.0.1
+ */
+public class Heartbeat {
+
+    private static final Logger logger = LoggerFactory.getLogger(Heartbeat.class);
+
+    static final long MIN_RETRY_DELAY_MILLIS = 500;
+
+    private final Supplier<CompletableFuture<Void>> beat;
+    private final LongSupplier intervalMillis;
+    private final DoubleSupplier jitter;
+    private final ScheduledExecutorService executor;
+
+    private ScheduledFuture<?> scheduledBeat;
+    private CompletableFuture<Void> runningBeat = CompletableFuture.completedFuture(null);
+    private int failures;
+    private boolean stopped;
+
+    /**
+     * @param beat           the action to run, the returned future completes when it is done
+     * @param intervalMillis the interval between two successful beats, read again before every beat
+     * @param jitter         the maximum fraction the interval is shortened by, read again before every beat
+     * @param executor       the executor the beats are scheduled on
+     */
+    public Heartbeat(@NotNull final Supplier<CompletableFuture<Void>> beat, @NotNull final LongSupplier intervalMillis,
+                     @NotNull final DoubleSupplier jitter, @NotNull final ScheduledExecutorService executor) {
+        this.beat = beat;
+        this.intervalMillis = intervalMillis;
+        this.jitter = jitter;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules the first beat after the given delay.
+     */
+    public synchronized void start(final long delayMillis) {
+        if (stopped || scheduledBeat != null) {
+            return;
+        }
+        schedule(delayMillis);
+    }
+
+    /**
+     * Stops scheduling further beats.
+     *
+     * @return a future that completes when a currently running beat is done
+     */
+    @NotNull
+    public synchronized CompletableFuture<Void> stop() {
+        stopped = true;
+        if (scheduledBeat != null) {
+            scheduledBeat.cancel(false);
+        }
+        return runningBeat.handle((ignored, throwable) -> null);
+    }
+
+    private synchronized void run() {
+        if (stopped) {
+            return;
+        }
+        try {
+            runningBeat = beat.get();
+        } catch (final Exception ex) {
+            runningBeat = CompletableFuture.failedFuture(ex);
+        }
+        runningBeat.whenComplete((ignored, throwable) -> beatCompleted(throwable));
+    }
+
+    private synchronized void beatCompleted(final Throwable throwable) {
+        if (stopped) {
+            return;
+        }
+        final long interval = intervalMillis.getAsLong();
+        if (throwable == null) {
+            failures = 0;
+            schedule(interval - (long) (ThreadLocalRandom.current().nextDouble() * jitter.getAsDouble() * interval));
+        } else {
+            failures++;
+            final long backoff = Math.min(MIN_RETRY_DELAY_MILLIS << Math.min(failures - 1, 20), interval);
+            final long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            logger.warn("Heartbeat failed {} time(s) in a row, retrying in {} ms. {}", failures, delay, throwable.toString());
+            schedule(delay);
+        }
+    }
+
+    private void schedule(final long delayMillis) {
+        scheduledBeat = executor.schedule(this::run, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.ibm.etcd.api.Event;
+import com.ibm.etcd.api.KeyValue;
+import com.ibm.etcd.client.kv.KvClient;
+import com.ibm.etcd.client.kv.WatchUpdate;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Local copy of all entries below the discovery key. The cache is filled by a single range read and kept current
+ * through an etcd watch, so membership can be answered from memory.
+ * <p>
+ * Reconnects of the underlying watch stream are handled by etcd-java, which resumes from the last received revision.
+ * If the watch gets cancelled (e.g. because that revision has been compacted) the cache falls back to a new range
+ * read on the next access. Concurrent accesses share that read, none of them blocks a thread while waiting for it.
+ *
+ * @since 4.0.1
+ */
+public class MembershipCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MembershipCache.class);
+
+    private final KvClient client;
+    private final PrefixReader prefixReader;
+    private final ByteString prefix;
+    private final int pageSize;
+    private final ConcurrentMap<ByteString, KeyValue> entries = new ConcurrentHashMap<>();
+
+    private KvClient.Watch watch;
+    private CompletableFuture<Void> resyncFuture;
+    private boolean closed;
+    private volatile WatchObserver observer;
+    private volatile long revision;
+    private volatile boolean stale = true;
+
+    public MembershipCache(@NotNull final KvClient client, @NotNull final PrefixReader prefixReader, @NotNull final ByteString prefix, final int pageSize) {
+        this.client = client;
+        this.prefixReader = prefixReader;
+        this.prefix = prefix;
+        this.pageSize = pageSize;
+    }
+
+    @NotNull
+    public ByteString getPrefix() {
+        return prefix;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    @NotNull
+    public CompletableFuture<List<KeyValue>> getEntries() {
+        if (!stale) {
+            return CompletableFuture.completedFuture(new ArrayList<>(entries.values()));
+        }
+        return resync().thenApply(ignored -> new ArrayList<>(entries.values()));
+    }
+
+    public synchronized void close() {
+        closed = true;
+        stale = true;
+        observer = null;
+        if (watch != null) {
+            watch.close();
+            watch = null;
+        }
+    }
+
+    @NotNull
+    private synchronized CompletableFuture<Void> resync() {
+        if (!stale) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (resyncFuture != null) {
+            return resyncFuture;
+        }
+        observer = null;
+        if (watch != null) {
+            watch.close();
+            watch = null;
+        }
+
+        final List<KeyValue> keyValues = new ArrayList<>();
+        final CompletableFuture<Void> future = prefixReader.readPages(prefix, PrefixReader.prefixEnd(prefix), 0, pageSize, false, false, keyValues::add)
+                .thenAccept(readRevision -> startWatch(keyValues, readRevision));
+        resyncFuture = future;
+        // a failed read is tried again on the next access
+        future.whenComplete((ignored, throwable) -> clearResync(future));
+        return future;
+    }
+
+    private synchronized void clearResync(@NotNull final CompletableFuture<Void> future) {
+        if (resyncFuture == future) {
+            resyncFuture = null;
+        }
+    }
+
+    private synchronized void startWatch(@NotNull final List<KeyValue> keyValues, final long readRevision) {
+        if (closed) {
+            // a watch started now would never be closed
+            return;
+        }
+        entries.clear();
+        for (final KeyValue keyValue : keyValues) {
+            entries.put(keyValue.getKey(), keyValue);
+        }
+        revision = readRevision;
+
+        observer = new WatchObserver();
+        watch = client.watch(prefix).asPrefix().startRevision(revision + 1).start(observer);
+        stale = false;
+        logger.debug("Loaded {} Etcd entries at revision {}, watching for changes.", entries.size(), revision);
+    }
+
+    /**
+     * Observer of a single watch. Updates of a watch that has already been replaced are ignored.
+     */
+    private class WatchObserver implements StreamObserver<WatchUpdate> {
+
+        @Override
+        public void onNext(@NotNull final WatchUpdate update) {
+            if (observer != this) {
+                return;
+            }
+            for (final Event event : update.getEvents()) {
+                final KeyValue keyValue = event.getKv();
+                if (event.getType() == Event.EventType.DELETE) {
+                    entries.remove(keyValue.getKey());
+                } else {
+                    entries.put(keyValue.getKey(), keyValue);
+                }
+            }
+            revision = update.getHeader().getRevision();
+        }
+
+        @Override
+        public void onError(@NotNull final Throwable throwable) {
+            if (observer != this) {
+                return;
+            }
+            logger.warn("Etcd watch on '{}' failed at revision {}, entries will be reloaded. {}", prefix.toStringUtf8(), revision, throwable.toString());
+            stale = true;
+        }
+
+        @Override
+        public void onCompleted() {
+            if (observer == this) {
+                stale = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.annotations.Nullable;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local copy of the last discovered nodes, so a restarted node knows its peers before etcd answered.
+ * <p>
+ * The file is replaced atomically by a rename and ends with a CRC32 checksum of its content, so a partially written
+ * or corrupted file is detected and ignored.
+ *
+ * @since 4.0.1
+ */
+public class MembershipFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(MembershipFile.class);
+
+    public static final String MEMBERSHIP_FILE = "etcd-discovery-membership.bin";
+
+    private static final int MAGIC = 0x45544344;
+    private static final byte VERSION = 1;
+
+    private final Path path;
+    private final Path temporaryPath;
+
+    public MembershipFile(@NotNull final File extensionHomeFolder) {
+        this.path = new File(extensionHomeFolder, MEMBERSHIP_FILE).toPath();
+        this.temporaryPath = new File(extensionHomeFolder, MEMBERSHIP_FILE + ".tmp").toPath();
+    }
+
+    public void write(@NotNull final MembershipSnapshot membership) throws IOException {
+        final Map<String, ClusterNodeAddress> addressesByClusterId = membership.getAddressesByClusterId();
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(content);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(addressesByClusterId.size());
+        for (final Map.Entry<String, ClusterNodeAddress> entry : addressesByClusterId.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue().getHost());
+            out.writeInt(entry.getValue().getPort());
+        }
+        out.writeLong(checksum(content.toByteArray(), content.size()));
+
+        try (final FileChannel channel = FileChannel.open(temporaryPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(content.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param maxAgeInSeconds the maximum age of the file content
+     * @return the nodes, created at the time the file was written, or null if there is no valid file that is younger
+     * than the maximum age
+     */
+    @Nullable
+    public List<ClusterNodeEntry> read(final long maxAgeInSeconds) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            final byte[] content = Files.readAllBytes(path);
+            final int length = content.length - Long.BYTES;
+            if (length < 0 || checksum(content, length) != ByteBuffer.wrap(content, length, Long.BYTES).getLong()) {
+                logger.warn("Ignoring corrupted membership file '{}'.", path);
+                return null;
+            }
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                logger.warn("Ignoring membership file '{}' of an unknown format.", path);
+                return null;
+            }
+            final long writtenMillis = in.readLong();
+            final long ageMillis = System.currentTimeMillis() - writtenMillis;
+            if (ageMillis > maxAgeInSeconds * 1000) {
+                logger.debug("Ignoring membership file '{}' written {} ms ago.", path, ageMillis);
+                return null;
+            }
+            final int count = in.readInt();
+            final List<ClusterNodeEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entries.add(new ClusterNodeEntry(in.readUTF(), in.readUTF(), in.readInt(), writtenMillis));
+            }
+            return entries;
+        } catch (final IOException | RuntimeException ex) {
+            logger.warn("Could not read membership file '{}'. {}", path, ex.toString());
+            return null;
+        }
+    }
+
+    private static long checksum(@NotNull final byte[] content, final int length) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(content, 0, length);
+        return crc32.getValue();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the discovered nodes. {@link #next(Collection)} builds the following snapshot and records
+ * which nodes were added, removed or changed their address. Addresses of unchanged nodes are reused and if nothing
+ * changed at all the same snapshot is returned.
+ *
+ * @since 4.0.1
+ */
+public class MembershipSnapshot {
+
+    public static final MembershipSnapshot EMPTY = new MembershipSnapshot(0, Collections.emptyMap(), Set.of(), Set.of(), Set.of());
+
+    private final long version;
+    private final Map<String, ClusterNodeAddress> addressesByClusterId;
+    private final List<ClusterNodeAddress> addresses;
+    private final Set<String> added;
+    private final Set<String> removed;
+    private final Set<String> changed;
+
+    private MembershipSnapshot(final long version, @NotNull final Map<String, ClusterNodeAddress> addressesByClusterId,
+                               @NotNull final Set<String> added, @NotNull final Set<String> removed, @NotNull final Set<String> changed) {
+        this.version = version;
+        this.addressesByClusterId = Collections.unmodifiableMap(addressesByClusterId);
+        this.addresses = Collections.unmodifiableList(new ArrayList<>(addressesByClusterId.values()));
+        this.added = Collections.unmodifiableSet(added);
+        this.removed = Collections.unmodifiableSet(removed);
+        this.changed = Collections.unmodifiableSet(changed);
+    }
+
+    @NotNull
+    public MembershipSnapshot next(@NotNull final Collection<ClusterNodeEntry> entries) {
+        final Map<String, ClusterNodeAddress> nextAddresses = new LinkedHashMap<>();
+        final Set<String> nextAdded = new HashSet<>();
+        final Set<String> nextChanged = new HashSet<>();
+
+        for (final ClusterNodeEntry entry : entries) {
+            final ClusterNodeAddress address = addressesByClusterId.get(entry.getClusterId());
+            if (address == null) {
+                nextAdded.add(entry.getClusterId());
+                nextAddresses.put(entry.getClusterId(), entry.getClusterNodeAddress());
+            } else if (!address.getHost().equals(entry.getClusterNodeIP()) || address.getPort() != entry.getClusterNodePort()) {
+                nextChanged.add(entry.getClusterId());
+                nextAddresses.put(entry.getClusterId(), entry.getClusterNodeAddress());
+            } else {
+                nextAddresses.put(entry.getClusterId(), address);
+            }
+        }
+
+        final Set<String> nextRemoved = new HashSet<>(addressesByClusterId.keySet());
+        nextRemoved.removeAll(nextAddresses.keySet());
+
+        if (nextAdded.isEmpty() && nextRemoved.isEmpty() && nextChanged.isEmpty()) {
+            return this;
+        }
+        return new MembershipSnapshot(version + 1, nextAddresses, nextAdded, nextRemoved, nextChanged);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @NotNull
+    public List<ClusterNodeAddress> getAddresses() {
+        return addresses;
+    }
+
+    @NotNull
+    public Map<String, ClusterNodeAddress> getAddressesByClusterId() {
+        return addressesByClusterId;
+    }
+
+    /**
+     * @return the cluster ids of the nodes added compared to the previous snapshot
+     */
+    @NotNull
+    public Set<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the cluster ids of the nodes removed compared to the previous snapshot
+     */
+    @NotNull
+    public Set<String> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return the cluster ids of the nodes whose address changed compared to the previous snapshot
+     */
+    @NotNull
+    public Set<String> getChanged() {
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return "MembershipSnapshot{" +
+                "version=" + version +
+                ", addresses=" + addressesByClusterId +
+                ", added=" + added +
+                ", removed=" + removed +
+                ", changed=" + changed +
+                '}';
+    }
+}
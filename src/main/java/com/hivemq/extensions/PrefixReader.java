@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.annotations.Nullable;
+import com.hivemq.extensions.config.EtcdConfig;
+import com.ibm.etcd.api.KeyValue;
+import com.ibm.etcd.client.kv.KvClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Reads all entries below a prefix. With read probes enabled the keys and mod revisions of the last read are kept and
+ * a keys only read shows whether any key below the prefix was added, changed or removed since. Only then all entries
+ * are read again, otherwise the keys only result is returned and callers take the values from what they decoded
+ * before, see {@link com.hivemq.extensions.codec.DecodedEntryCache}. With serializable reads enabled
+ * the connected etcd member answers the reads, with or without probes. A full linearizable read is done at least
+ * every {@link EtcdConfig#getReadMaxStalenessInSeconds()}.
+ * <p>
+ * Reads are split into pages of {@link EtcdConfig#getRangePageSize()} keys. All pages are read at the revision of
+ * the first one, so the result is consistent while memory per response and message size stay bounded. Every page is
+ * handed to the consumer as it arrives and not kept, so the caller only holds what it decoded from the entries.
+ *
+ * @since 4.0.1
+ */
+public class PrefixReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrefixReader.class);
+
+    private static final ByteString ZERO_BYTE = ByteString.copyFrom(new byte[]{0});
+
+    private final KvClient client;
+    private final RequestExecutor requestExecutor;
+    private final DiscoveryMetrics metrics;
+
+    private volatile RangeSnapshot lastSnapshot;
+
+    public PrefixReader(@NotNull final KvClient client, @NotNull final RequestExecutor requestExecutor, @NotNull final DiscoveryMetrics metrics) {
+        this.client = client;
+        this.requestExecutor = requestExecutor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Passes the entries below the prefix to the consumer, page by page in key order. If a read probe found them
+     * unchanged the key values carry no value.
+     */
+    @NotNull
+    public CompletableFuture<Void> read(@NotNull final ByteString prefix, @NotNull final EtcdConfig etcdConfig,
+                                        @NotNull final Consumer<KeyValue> consumer) {
+        final RangeSnapshot snapshot = lastSnapshot;
+        if (snapshot == null || !snapshot.prefix.equals(prefix) || snapshot.isStale(etcdConfig.getReadMaxStalenessInSeconds())) {
+            return fullRead(prefix, etcdConfig, false, consumer);
+        }
+        if (!etcdConfig.getReadProbe() || snapshot.modRevisions == null) {
+            return fullRead(prefix, etcdConfig, etcdConfig.getSerializableReads(), consumer);
+        }
+
+        // keys only, the probe holds no values
+        final List<KeyValue> probedKeyValues = new ArrayList<>();
+        return readPages(prefix, prefixEnd(prefix), 0, etcdConfig.getRangePageSize(), true, etcdConfig.getSerializableReads(), probedKeyValues::add)
+                .thenCompose(probeRevision -> {
+                    if (snapshot.matches(probedKeyValues)) {
+                        logger.trace("Etcd entries below '{}' are unchanged.", prefix.toStringUtf8());
+                        probedKeyValues.forEach(consumer);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return fullRead(prefix, etcdConfig, etcdConfig.getSerializableReads(), consumer);
+                });
+    }
+
+    /**
+     * Drops the snapshot of the last read, the next read is a linearizable full read.
+     */
+    public void invalidate() {
+        lastSnapshot = null;
+    }
+
+    @NotNull
+    private CompletableFuture<Void> fullRead(@NotNull final ByteString prefix, @NotNull final EtcdConfig etcdConfig, final boolean serializable,
+                                             @NotNull final Consumer<KeyValue> consumer) {
+        final long readStartMillis = System.currentTimeMillis();
+        // the mod revisions are only compared by read probes
+        final Map<ByteString, Long> modRevisions = etcdConfig.getReadProbe() ? new HashMap<>() : null;
+        final Consumer<KeyValue> pageConsumer = modRevisions == null ? consumer : keyValue -> {
+            modRevisions.put(keyValue.getKey(), keyValue.getModRevision());
+            consumer.accept(keyValue);
+        };
+        return readPages(prefix, prefixEnd(prefix), 0, etcdConfig.getRangePageSize(), false, serializable, pageConsumer).thenAccept(revision -> {
+            final RangeSnapshot snapshot = lastSnapshot;
+            // a serializable read does not renew the staleness bound
+            final long linearizableReadMillis = serializable && snapshot != null ? snapshot.linearizableReadMillis : readStartMillis;
+            lastSnapshot = new RangeSnapshot(prefix, modRevisions, linearizableReadMillis);
+        });
+    }
+
+    /**
+     * Reads all keys from {@code fromKey} up to {@code rangeEnd}, {@code pageSize} keys per request. The key values of
+     * a page are passed to the consumer before the next page is requested.
+     *
+     * @param revision the revision to read at, 0 for the current one
+     * @param pageSize the maximum number of keys per request, 0 for no limit
+     * @return the revision the keys were read at
+     */
+    @NotNull
+    CompletableFuture<Long> readPages(@NotNull final ByteString fromKey, @NotNull final ByteString rangeEnd,
+                                      final long revision, final int pageSize, final boolean keysOnly, final boolean serializable,
+                                      @NotNull final Consumer<KeyValue> consumer) {
+        return requestExecutor.execute(DiscoveryMetrics.RANGE, RequestLimiter.Priority.READ, () -> {
+            KvClient.FluentRangeRequest request = client.get(fromKey).rangeEnd(rangeEnd).limit(pageSize).serializable(serializable);
+            if (keysOnly) {
+                request = request.keysOnly();
+            }
+            if (revision != 0) {
+                request = request.revision(revision);
+            }
+            return request.async();
+        }).thenCompose(rangeResponse -> {
+            metrics.rangeResponseReceived(rangeResponse.getSerializedSize());
+            rangeResponse.getKvsList().forEach(consumer);
+            final long readRevision = revision != 0 ? revision : rangeResponse.getHeader().getRevision();
+            if (!rangeResponse.getMore() || rangeResponse.getKvsCount() == 0) {
+                return CompletableFuture.completedFuture(readRevision);
+            }
+            final ByteString lastKey = rangeResponse.getKvs(rangeResponse.getKvsCount() - 1).getKey();
+            return readPages(lastKey.concat(ZERO_BYTE), rangeEnd, readRevision, pageSize, keysOnly, serializable, consumer);
+        });
+    }
+
+    /**
+     * Returns the smallest key that is larger than all keys starting with the given prefix.
+     */
+    @NotNull
+    static ByteString prefixEnd(@NotNull final ByteString prefix) {
+        for (int i = prefix.size() - 1; i >= 0; i--) {
+            final int lastByte = prefix.byteAt(i) & 0xff;
+            if (lastByte < 0xff) {
+                return prefix.substring(0, i).concat(ByteString.copyFrom(new byte[]{(byte) (lastByte + 1)}));
+            }
+        }
+        // no prefix end exists, the zero byte stands for all keys up to the end
+        return ZERO_BYTE;
+    }
+
+    private static class RangeSnapshot {
+
+        private final ByteString prefix;
+        private final Map<ByteString, Long> modRevisions;
+        private final long linearizableReadMillis;
+
+        RangeSnapshot(@NotNull final ByteString prefix, @Nullable final Map<ByteString, Long> modRevisions, final long linearizableReadMillis) {
+            this.prefix = prefix;
+            this.modRevisions = modRevisions;
+            this.linearizableReadMillis = linearizableReadMillis;
+        }
+
+        boolean isStale(final long maxStalenessInSeconds) {
+            return linearizableReadMillis + maxStalenessInSeconds * 1_000 < System.currentTimeMillis();
+        }
+
+        /**
+         * Every put raises the mod revision of its key, so the same keys with the same mod revisions
+         * means no key was added, changed or removed.
+         */
+        boolean matches(@NotNull final List<KeyValue> probedKeyValues) {
+            if (modRevisions == null || probedKeyValues.size() != modRevisions.size()) {
+                return false;
+            }
+            for (final KeyValue keyValue : probedKeyValues) {
+                final Long modRevision = modRevisions.get(keyValue.getKey());
+                if (modRevision == null || modRevision != keyValue.getModRevision()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.annotations.Nullable;
+import com.hivemq.extensions.config.EtcdConfig;
+import com.hivemq.extensions.jfr.EtcdOperationEvent;
+import io.grpc.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.hivemq.extensions.EtcdClient.toCompletableFuture;
+
+/**
+ * Sends requests to etcd with a deadline, retries them with a jittered exponential backoff if etcd is unavailable
+ * or too slow, and fails fast while the {@link CircuitBreaker} is open. The {@link RequestLimiter} bounds the
+ * requests sent at once and per second. Every attempt is recorded as an
+ * {@link EtcdOperationEvent} while a flight recording is running.
+ *
+ * @since 4.0.1
+ */
+public class RequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+
+    static final long MIN_BACKOFF_MILLIS = 100;
+    static final long MAX_BACKOFF_MILLIS = 2_000;
+
+    private static final Set<Status.Code> RETRYABLE_CODES = Set.of(
+            Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED, Status.Code.RESOURCE_EXHAUSTED, Status.Code.ABORTED);
+
+    private final DiscoveryMetrics metrics;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private final RequestLimiter requestLimiter = new RequestLimiter();
+
+    private volatile long readTimeoutMillis;
+    private volatile long writeTimeoutMillis;
+    private volatile int maxRetries;
+
+    public RequestExecutor(@NotNull final DiscoveryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void configure(@NotNull final EtcdConfig etcdConfig) {
+        readTimeoutMillis = etcdConfig.getReadTimeoutInMillis();
+        writeTimeoutMillis = etcdConfig.getWriteTimeoutInMillis();
+        maxRetries = etcdConfig.getMaxRetries();
+        circuitBreaker.configure(etcdConfig.getCircuitBreakerThreshold(), etcdConfig.getCircuitBreakerOpenTimeInSeconds() * 1000);
+        requestLimiter.configure(etcdConfig.getRequestRate(), etcdConfig.getRequestBurst(), etcdConfig.getMaxInFlightRequests());
+    }
+
+    public boolean isCircuitBreakerOpen() {
+        return circuitBreaker.isOpen();
+    }
+
+    /**
+     * Sends the request built by the given supplier, a new request is built for every retry. Every attempt passes the
+     * {@link RequestLimiter} with the given priority.
+     *
+     * @param operation one of the operations of {@link DiscoveryMetrics}, {@link DiscoveryMetrics#RANGE} uses the
+     *                  read timeout, all others the write timeout
+     */
+    @NotNull
+    public <T> CompletableFuture<T> execute(@NotNull final String operation, @NotNull final RequestLimiter.Priority priority,
+                                            @NotNull final Supplier<ListenableFuture<T>> request) {
+        return attempt(operation, priority, request, 0);
+    }
+
+    @NotNull
+    private <T> CompletableFuture<T> attempt(@NotNull final String operation, @NotNull final RequestLimiter.Priority priority,
+                                             @NotNull final Supplier<ListenableFuture<T>> request, final int attempt) {
+        final EtcdOperationEvent event = new EtcdOperationEvent();
+        event.begin();
+        final long timeoutMillis = DiscoveryMetrics.RANGE.equals(operation) ? readTimeoutMillis : writeTimeoutMillis;
+        final long startNanos = System.nanoTime();
+        CompletableFuture<Void> permit = requestLimiter.acquire(priority);
+        if (timeoutMillis > 0) {
+            // a waiting request gives up after its timeout, the limiter then drops it
+            permit = permit.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return permit.handle((ignored, throwable) -> {
+            if (throwable != null) {
+                // the limiter sheds load this node causes itself, that's neither retried nor an etcd failure
+                metrics.operationShed(operation);
+                commit(event, operation, attempt, EtcdOperationEvent.SHED, null);
+                return CompletableFuture.<T>failedFuture(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Etcd " + operation + " request shed by the request limiter").asRuntimeException());
+            }
+            // waiting for the permit and the request share one deadline, at least a millisecond is left as 0 disables it
+            final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            return send(operation, priority, request, attempt, event, timeoutMillis > 0 ? Math.max(timeoutMillis - waitedMillis, 1) : 0);
+        }).thenCompose(Function.identity());
+    }
+
+    @NotNull
+    private <T> CompletableFuture<T> send(@NotNull final String operation, @NotNull final RequestLimiter.Priority priority,
+                                          @NotNull final Supplier<ListenableFuture<T>> request, final int attempt,
+                                          @NotNull final EtcdOperationEvent event, final long timeoutMillis) {
+        if (!circuitBreaker.allowRequest()) {
+            requestLimiter.release();
+            metrics.operationRejected(operation);
+            commit(event, operation, attempt, EtcdOperationEvent.REJECTED, null);
+            return CompletableFuture.failedFuture(Status.UNAVAILABLE.withDescription("Circuit breaker for etcd requests is open").asRuntimeException());
+        }
+        CompletableFuture<T> future;
+        try {
+            future = withDeadline(request.get(), timeoutMillis, operation);
+        } catch (final Exception ex) {
+            future = CompletableFuture.failedFuture(ex);
+        }
+
+        return metrics.time(operation, future).handle((result, throwable) -> {
+            requestLimiter.release();
+            if (throwable == null) {
+                commit(event, operation, attempt, EtcdOperationEvent.SUCCESS, result);
+                circuitBreaker.onSuccess();
+                return CompletableFuture.completedFuture(result);
+            }
+            final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            final Status.Code code = Status.fromThrowable(cause).getCode();
+            commit(event, operation, attempt, code == Status.Code.DEADLINE_EXCEEDED ? EtcdOperationEvent.TIMEOUT : EtcdOperationEvent.ERROR, null);
+            if (!RETRYABLE_CODES.contains(code)) {
+                // etcd answered, the request itself was wrong
+                circuitBreaker.onSuccess();
+                return CompletableFuture.<T>failedFuture(cause);
+            }
+            if (circuitBreaker.onFailure()) {
+                metrics.circuitBreakerOpened();
+            }
+            if (attempt >= maxRetries) {
+                return CompletableFuture.<T>failedFuture(cause);
+            }
+            final long delayMillis = backoffMillis(attempt);
+            logger.debug("Etcd {} request failed, retrying in {} ms. {}", operation, delayMillis, cause.toString());
+            metrics.operationRetried(operation);
+            return CompletableFuture.runAsync(() -> {}, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> attempt(operation, priority, request, attempt + 1));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * The event fields are only filled if the event is recorded, so requests cost nothing extra without a recording.
+     */
+    static void commit(@NotNull final EtcdOperationEvent event, @NotNull final String operation, final int attempt,
+                               @NotNull final String outcome, @Nullable final Object response) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.attempt = attempt + 1;
+            event.outcome = outcome;
+            event.setResponse(response);
+            event.commit();
+        }
+    }
+
+    /**
+     * Full jitter: a random delay up to the exponentially growing backoff.
+     */
+    static long backoffMillis(final int attempt) {
+        final long backoff = Math.min(MIN_BACKOFF_MILLIS << Math.min(attempt, 20), MAX_BACKOFF_MILLIS);
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    /**
+     * Cancels the request if it did not complete within the timeout, the returned future then fails with
+     * {@link Status#DEADLINE_EXCEEDED}.
+     */
+    @NotNull
+    private static <T> CompletableFuture<T> withDeadline(@NotNull final ListenableFuture<T> listenableFuture, final long timeoutMillis,
+                                                         @NotNull final String operation) {
+        if (timeoutMillis <= 0) {
+            return toCompletableFuture(listenableFuture);
+        }
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        toCompletableFuture(listenableFuture).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                future.complete(result);
+            } else if (throwable instanceof TimeoutException) {
+                listenableFuture.cancel(true);
+                future.completeExceptionally(Status.DEADLINE_EXCEEDED
+                        .withDescription("Etcd " + operation + " request exceeded " + timeoutMillis + " ms").asRuntimeException());
+            } else {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions;
+
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the requests this node sends to etcd with a token bucket and a maximum number of requests in flight, so a
+ * degraded etcd is not flooded by retries and cleanups of all nodes.
+ * <p>
+ * Requests that can't be sent right away wait by {@link Priority}: the registration of the own entry before membership
+ * reads. Cleanup requests never wait, they are shed unless at least half of the burst and of the in-flight requests
+ * are left, which keeps room for the other requests.
+ *
+ * @since 4.0.1
+ */
+public class RequestLimiter {
+
+    public enum Priority {REGISTRATION, READ, CLEANUP}
+
+    private final LongSupplier nanoClock;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+            Comparator.comparing((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.sequence));
+
+    private double ratePerNano;
+    private int burst;
+    private int maxInFlight;
+    private double tokens;
+    private long refilledNanos;
+    private int inFlight;
+    private long sequence;
+    private boolean drainScheduled;
+
+    public RequestLimiter() {
+        this(System::nanoTime);
+    }
+
+    RequestLimiter(final LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.refilledNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * @param ratePerSecond the requests per second the bucket is refilled with, 0 does not limit the rate
+     * @param burst         the requests that can be sent at once after a quiet period
+     * @param maxInFlight   the maximum number of requests waiting for a response, 0 does not limit them
+     */
+    public void configure(final int ratePerSecond, final int burst, final int maxInFlight) {
+        final List<Waiter> admitted;
+        synchronized (this) {
+            refill();
+            // the bucket starts full when the rate is first limited
+            final boolean wasUnlimited = ratePerNano == 0;
+            this.ratePerNano = ratePerSecond / 1e9;
+            this.burst = Math.max(burst, 1);
+            this.maxInFlight = maxInFlight;
+            tokens = wasUnlimited ? this.burst : Math.min(tokens, this.burst);
+            admitted = admitWaiters();
+        }
+        complete(admitted);
+    }
+
+    /**
+     * @return a future that completes once the request may be sent, {@link #release()} must be called when it is
+     * done. It fails with {@link Status#RESOURCE_EXHAUSTED} if a cleanup request is shed.
+     */
+    @NotNull
+    public CompletableFuture<Void> acquire(@NotNull final Priority priority) {
+        synchronized (this) {
+            dropGivenUpWaiters();
+            if (waiters.isEmpty() && tryTake(priority)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (priority == Priority.CLEANUP) {
+                return CompletableFuture.failedFuture(Status.RESOURCE_EXHAUSTED
+                        .withDescription("Etcd cleanup request shed by the request limiter").asRuntimeException());
+            }
+            final Waiter waiter = new Waiter(priority, sequence++);
+            waiters.add(waiter);
+            scheduleDrain();
+            return waiter.future;
+        }
+    }
+
+    public void release() {
+        final List<Waiter> admitted;
+        synchronized (this) {
+            inFlight--;
+            admitted = admitWaiters();
+            // the released slot doesn't help waiters that lack a token
+            scheduleDrain();
+        }
+        complete(admitted);
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    private void drain() {
+        final List<Waiter> admitted;
+        synchronized (this) {
+            drainScheduled = false;
+            admitted = admitWaiters();
+            scheduleDrain();
+        }
+        complete(admitted);
+    }
+
+    /**
+     * Takes the waiters that can be sent now, waiters that gave up meanwhile are dropped.
+     */
+    @NotNull
+    private List<Waiter> admitWaiters() {
+        final List<Waiter> admitted = new ArrayList<>();
+        dropGivenUpWaiters();
+        while (!waiters.isEmpty() && tryTake(waiters.peek().priority)) {
+            admitted.add(waiters.poll());
+            dropGivenUpWaiters();
+        }
+        return admitted;
+    }
+
+    /**
+     * Removes waiters that gave up from the head of the queue, so they don't hold back new requests.
+     */
+    private void dropGivenUpWaiters() {
+        while (!waiters.isEmpty() && waiters.peek().future.isDone()) {
+            waiters.poll();
+        }
+    }
+
+    /**
+     * Completes the futures outside of the lock, the requests are sent by their callbacks.
+     */
+    private void complete(@NotNull final List<Waiter> admitted) {
+        for (final Waiter waiter : admitted) {
+            if (!waiter.future.complete(null)) {
+                // the waiter gave up after it was admitted
+                release();
+            }
+        }
+    }
+
+    /**
+     * Waiters that lack a token are admitted once the bucket refilled, waiters that lack an in-flight slot by
+     * {@link #release()}.
+     */
+    private void scheduleDrain() {
+        if (drainScheduled || waiters.isEmpty() || ratePerNano == 0 || tokens >= 1) {
+            return;
+        }
+        drainScheduled = true;
+        final long delayNanos = (long) Math.ceil((1 - tokens) / ratePerNano);
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(this::drain);
+    }
+
+    private boolean tryTake(@NotNull final Priority priority) {
+        refill();
+        final boolean cleanup = priority == Priority.CLEANUP;
+        if (maxInFlight > 0 && inFlight >= (cleanup ? Math.max(maxInFlight / 2, 1) : maxInFlight)) {
+            return false;
+        }
+        if (ratePerNano > 0) {
+            if (tokens < (cleanup ? Math.max(burst / 2.0, 1) : 1)) {
+                return false;
+            }
+            tokens--;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private void refill() {
+        final long nowNanos = nanoClock.getAsLong();
+        tokens = Math.min(tokens + (nowNanos - refilledNanos) * ratePerNano, burst);
+        refilledNanos = nowNanos;
+    }
+
+    private static class Waiter {
+
+        private final Priority priority;
+        private final long sequence;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Waiter(@NotNull final Priority priority, final long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
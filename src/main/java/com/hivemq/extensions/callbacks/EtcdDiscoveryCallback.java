@@ -14,20 +14,50 @@
 
 package com.hivemq.extensions.callbacks;
 
-import com.google.gson.Gson;
+import com.codahale.metrics.Timer;
+import com.google.protobuf.ByteString;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.annotations.Nullable;
+import com.hivemq.extension.sdk.api.services.Services;
 import com.hivemq.extension.sdk.api.services.cluster.ClusterDiscoveryCallback;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.AdaptiveRefresh;
+import com.hivemq.extensions.DiscoveryMetrics;
 import com.hivemq.extensions.EtcdClient;
+import com.hivemq.extensions.Heartbeat;
+import com.hivemq.extensions.MembershipFile;
+import com.hivemq.extensions.MembershipSnapshot;
+import com.hivemq.extensions.codec.ClusterNodeEntryCodecs;
+import com.hivemq.extensions.codec.DecodedEntryCache;
 import com.hivemq.extensions.config.ClusterNodeEntry;
 import com.hivemq.extensions.config.ConfigurationReader;
+import com.hivemq.extensions.config.DiscoveryKeys;
+import com.hivemq.extensions.config.EtcdConfig;
+import com.hivemq.extensions.jfr.DiscoveryCallbackEvent;
+import com.hivemq.extensions.jfr.EntryDecodeEvent;
+import com.ibm.etcd.api.KeyValue;
+import io.grpc.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * @author Florian Limpöck
@@ -39,116 +69,550 @@ public class EtcdDiscoveryCallback implements ClusterDiscoveryCallback {
 
     private static final Logger logger = LoggerFactory.getLogger(EtcdDiscoveryCallback.class);
 
+    /**
+     * Heartbeat interval if the own entry is never refreshed, the heartbeat then only registers it again when needed.
+     */
+    private static final long IDLE_HEARTBEAT_INTERVAL_MILLIS = 60_000;
+
     @NotNull
     private EtcdClient etcdClient;
-    private ClusterNodeEntry ownNodeEntry;
+    @NotNull
+    private final Supplier<ScheduledExecutorService> executorSupplier;
+    private volatile ClusterNodeEntry ownNodeEntry;
+    private volatile String ownEntryKey;
+    private volatile long ownLeaseId;
+    private Heartbeat heartbeat;
+    private volatile MembershipSnapshot membership = MembershipSnapshot.EMPTY;
+    private MembershipFile membershipFile;
+    private long membershipPersistedMillis;
+    private final AdaptiveRefresh adaptiveRefresh = new AdaptiveRefresh();
+    private final DecodedEntryCache decodedEntryCache = new DecodedEntryCache();
 
     public EtcdDiscoveryCallback(@NotNull final ConfigurationReader configurationReader) {
-        this.etcdClient = new EtcdClient(configurationReader);
+        this(new EtcdClient(configurationReader, new DiscoveryMetrics(), Services::extensionExecutorService));
+    }
+
+    public EtcdDiscoveryCallback(@NotNull final EtcdClient etcdClient) {
+        this(etcdClient, Services::extensionExecutorService);
+    }
+
+    /**
+     * @param executorSupplier supplies the executor the heartbeat runs on, it is called on the first heartbeat
+     */
+    public EtcdDiscoveryCallback(@NotNull final EtcdClient etcdClient, @NotNull final Supplier<ScheduledExecutorService> executorSupplier) {
+        this.etcdClient = etcdClient;
+        this.executorSupplier = executorSupplier;
     }
 
     @Override
     public void init(@NotNull final ClusterDiscoveryInput clusterDiscoveryInput, @NotNull final ClusterDiscoveryOutput clusterDiscoveryOutput) {
-        try {
+        final DiscoveryCallbackEvent event = startEvent("init");
+        try (final Timer.Context timerContext = getMetrics().getInitTimer().time()) {
             try {
                 etcdClient.createOrUpdate();
             } catch (final Exception ex) {
                 logger.error("Configuration of the Etcd discovery extension couldn't be loaded. Skipping initial discovery. "+ex);
                 return;
             }
-            saveOwnInstance(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
-            clusterDiscoveryOutput.provideCurrentNodes(getNodeAddresses());
+            if (providePersistedMembership(clusterDiscoveryOutput)) {
+                // registration and the first read happen in the background, the read nodes are provided on the next reload
+                event.source = DiscoveryCallbackEvent.SOURCE_PERSISTED;
+                event.nodes = membership.getAddresses().size();
+                event.success = true;
+                startHeartbeat(clusterDiscoveryInput, 0);
+                getNodeAddresses(clusterDiscoveryInput.getOwnClusterId());
+                return;
+            }
+            // the own entry is written while the other entries are read, if that fails the heartbeat retries it right away
+            final CompletableFuture<Boolean> saveFuture = saveOwnInstance(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress())
+                    .handle((ignored, throwable) -> {
+                        if (throwable != null) {
+                            logger.warn("Could not register this node in Etcd, retrying in the background. {}", throwable.toString());
+                        }
+                        return throwable == null;
+                    });
+            final CompletableFuture<List<ClusterNodeAddress>> nodeAddressesFuture = getNodeAddresses(clusterDiscoveryInput.getOwnClusterId());
+            final boolean saved = saveFuture.join();
+            provideNodes(clusterDiscoveryOutput, nodeAddressesFuture.join(), DiscoveryCallbackEvent.SOURCE_ETCD, event);
+            startHeartbeat(clusterDiscoveryInput, saved ? heartbeatIntervalMillis() : 0);
         } catch (final Exception ex) {
+            event.success = false;
             logger.error("Initialization of the Etcd discovery callback failed.", ex);
+        } finally {
+            commitEvent(event);
         }
     }
 
     @Override
     public void reload(@NotNull final ClusterDiscoveryInput clusterDiscoveryInput, @NotNull final ClusterDiscoveryOutput clusterDiscoveryOutput) {
-        try {
+        final DiscoveryCallbackEvent event = startEvent("reload");
+        try (final Timer.Context timerContext = getMetrics().getReloadTimer().time()) {
+            final boolean connectionBuilt;
             try {
-                etcdClient.createOrUpdate();
+                connectionBuilt = etcdClient.createOrUpdate();
             } catch (final Exception ex) {
                 logger.error("Configuration of the Etcd discovery extension couldn't be reloaded. Skipping reload callback.");
                 return;
             }
-            if (ownNodeEntry == null || ownNodeEntry.isExpired(etcdClient.getEtcdConfig().getFileUpdateIntervalInSeconds())) {
-                saveOwnInstance(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
+            if (connectionBuilt) {
+                reregister(clusterDiscoveryInput);
             }
-            clusterDiscoveryOutput.provideCurrentNodes(getNodeAddresses());
+            // the own entry is kept by the heartbeat, it is only started here if the initialization failed
+            startHeartbeat(clusterDiscoveryInput, 0);
+            if (etcdClient.getEtcdConfig().getAdaptiveRefresh() && !adaptiveRefresh.shouldRead()) {
+                provideNodes(clusterDiscoveryOutput, membership.getAddresses(), DiscoveryCallbackEvent.SOURCE_LAST_READ, event);
+                return;
+            }
+            provideNodes(clusterDiscoveryOutput, getNodeAddresses(clusterDiscoveryInput.getOwnClusterId()).join(),
+                    DiscoveryCallbackEvent.SOURCE_ETCD, event);
         } catch (final Exception ex) {
+            event.success = false;
             logger.error("Reload of the Etcd discovery callback failed.", ex);
+        } finally {
+            commitEvent(event);
         }
     }
 
     @Override
     public void destroy(@NotNull final ClusterDiscoveryInput clusterDiscoveryInput) {
-        try {
-            if (ownNodeEntry != null) {
-                removeOwnFile(clusterDiscoveryInput.getOwnClusterId());
-            }
+        final DiscoveryCallbackEvent event = startEvent("destroy");
+        try (final Timer.Context timerContext = getMetrics().getDestroyTimer().time()) {
+            event.success = deregister();
+        } catch (final InterruptedException ex) {
+            logger.warn("Interrupted while removing this node from Etcd, its entry expires on its own.");
+            Thread.currentThread().interrupt();
         } catch (final Exception ex) {
             logger.error("Destroy of the Etcd discovery callback failed.", ex);
+        } finally {
+            commitEvent(event);
         }
     }
 
-    private void saveOwnInstance(@NotNull final String ownClusterId, @NotNull final ClusterNodeAddress ownAddress) throws Exception {
-        ClusterNodeEntry newNodeFile = new ClusterNodeEntry(ownClusterId, ownAddress);
+    /**
+     * Removes the own entry if the callback wasn't destroyed and closes the connection to etcd, both within the
+     * shutdown timeout. The callback can't be used afterwards.
+     */
+    public void close() {
+        final long startNanos = System.nanoTime();
+        try {
+            deregister();
+        } catch (final InterruptedException ex) {
+            logger.warn("Interrupted while removing this node from Etcd, its entry expires on its own.");
+            Thread.currentThread().interrupt();
+        } catch (final Exception ex) {
+            logger.warn("Could not remove this node from Etcd. {}", ex.toString());
+        }
+        final EtcdConfig etcdConfig = etcdClient.getEtcdConfig();
+        final long timeoutMillis = etcdConfig == null ? 0 : etcdConfig.getShutdownTimeoutInMillis();
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        // at least a millisecond is left, 0 would wait without limit
+        etcdClient.close(timeoutMillis == 0 ? 0 : Math.max(timeoutMillis - elapsedMillis, 1));
+    }
 
-        etcdClient.saveObject(etcdClient.getEtcdConfig().getKey() + ownClusterId, newNodeFile.toJson());
-        ownNodeEntry = newNodeFile;
+    /**
+     * Stops the heartbeat and removes the own entry. With lease based registration the lease is revoked as well,
+     * which also removes the janitor key. All steps together wait at most the shutdown timeout.
+     *
+     * @return whether the own entry was removed in time
+     */
+    private boolean deregister() throws InterruptedException {
+        final EtcdConfig etcdConfig = etcdClient.getEtcdConfig();
+        if (etcdConfig == null) {
+            // the configuration was never loaded, nothing was registered
+            return true;
+        }
+        final long timeoutMillis = etcdConfig.getShutdownTimeoutInMillis();
+        final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            await(stopHeartbeat(), timeoutMillis, deadlineNanos);
+            // read once, a concurrent removal must not lead to a delete of a null key
+            final String objectKey = ownEntryKey;
+            if (objectKey != null) {
+                await(removeOwnFile(objectKey), timeoutMillis, deadlineNanos);
+            }
+            await(etcdClient.revokeLease(), timeoutMillis, deadlineNanos);
+            return true;
+        } catch (final TimeoutException ex) {
+            logger.warn("Could not remove this node from Etcd within {} ms, its entry expires on its own.", timeoutMillis);
+        } catch (final ExecutionException ex) {
+            logger.warn("Could not remove this node from Etcd, its entry expires on its own. {}", ex.getCause().toString());
+        }
+        return false;
+    }
 
-        logger.debug("Updated own Etcd entry '{}'.", ownClusterId);
+    private static void await(@NotNull final CompletableFuture<Void> future, final long timeoutMillis, final long deadlineNanos)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (timeoutMillis == 0) {
+            future.get();
+        } else {
+            future.get(Math.max(deadlineNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        }
     }
 
-    private void removeOwnFile(@NotNull final String ownClusterId) {
-        final String objectKey = etcdClient.getEtcdConfig().getKey() + ownClusterId;
+    @NotNull
+    private static DiscoveryCallbackEvent startEvent(@NotNull final String callback) {
+        final DiscoveryCallbackEvent event = new DiscoveryCallbackEvent();
+        event.callback = callback;
+        event.begin();
+        return event;
+    }
 
-        etcdClient.deleteObject(objectKey);
-        ownNodeEntry = null;
+    private void commitEvent(@NotNull final DiscoveryCallbackEvent event) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.membershipVersion = membership.getVersion();
+            event.commit();
+        }
+    }
 
-        logger.debug("Removed own Etcd entry '{}'.", objectKey);
+    private static void provideNodes(@NotNull final ClusterDiscoveryOutput clusterDiscoveryOutput, @NotNull final List<ClusterNodeAddress> nodeAddresses,
+                                     @NotNull final String source, @NotNull final DiscoveryCallbackEvent event) {
+        clusterDiscoveryOutput.provideCurrentNodes(nodeAddresses);
+        event.nodes = nodeAddresses.size();
+        event.source = source;
+        event.success = true;
     }
 
+    /**
+     * Connects to etcd in the background, so the first discovery finds a ready connection.
+     */
     @NotNull
-    private List<ClusterNodeAddress> getNodeAddresses() {
-        final List<ClusterNodeAddress> nodeAddresses = new ArrayList<>();
-
-        final List<ClusterNodeEntry> nodeFiles;
+    public CompletableFuture<Void> warmUp() {
         try {
-            nodeFiles = getNodeEntries();
+            return etcdClient.warmUp(executorSupplier.get());
         } catch (final Exception ex) {
-            logger.error("Unknown error while reading all node entries.", ex);
-            return nodeAddresses;
+            return CompletableFuture.failedFuture(ex);
         }
+    }
 
-        for (final ClusterNodeEntry nodeFile : nodeFiles) {
+    @NotNull
+    public DiscoveryMetrics getMetrics() {
+        return etcdClient.getMetrics();
+    }
 
-            if (nodeFile.isExpired(etcdClient.getEtcdConfig().getExpirationInSeconds())) {
+    /**
+     * Provides the nodes of the membership file if it is enabled and not too old.
+     *
+     * @return whether nodes were provided
+     */
+    private boolean providePersistedMembership(@NotNull final ClusterDiscoveryOutput clusterDiscoveryOutput) {
+        if (!etcdClient.getEtcdConfig().getPersistMembership()) {
+            return false;
+        }
+        final List<ClusterNodeEntry> persistedEntries = getMembershipFile().read(etcdClient.getEtcdConfig().getPersistedMembershipMaxAgeInSeconds());
+        if (persistedEntries == null || persistedEntries.isEmpty()) {
+            return false;
+        }
+        final List<ClusterNodeAddress> persistedAddresses = updateMembership(persistedEntries, false).getAddresses();
+        logger.info("Providing {} nodes of the persisted membership, Etcd is read in the background.", persistedAddresses.size());
+        clusterDiscoveryOutput.provideCurrentNodes(persistedAddresses);
+        return true;
+    }
 
-                logger.debug("Etcd entry of node with clusterId {} is expired. Entry will be deleted.", nodeFile.getClusterId());
+    @NotNull
+    private synchronized MembershipFile getMembershipFile() {
+        if (membershipFile == null) {
+            membershipFile = new MembershipFile(etcdClient.getExtensionHomeFolder());
+        }
+        return membershipFile;
+    }
 
-                final String objectKey = etcdClient.getEtcdConfig().getKey() + nodeFile.getClusterId();
-                etcdClient.deleteObject(objectKey);
-            } else {
-                nodeAddresses.add(nodeFile.getClusterNodeAddress());
+    private synchronized void startHeartbeat(@NotNull final ClusterDiscoveryInput clusterDiscoveryInput, final long delayMillis) {
+        if (heartbeat != null) {
+            return;
+        }
+        final String ownClusterId = clusterDiscoveryInput.getOwnClusterId();
+        final ClusterNodeAddress ownAddress = clusterDiscoveryInput.getOwnAddress();
+        heartbeat = new Heartbeat(() -> refreshOwnInstance(ownClusterId, ownAddress), this::heartbeatIntervalMillis,
+                () -> etcdClient.getEtcdConfig().getRefreshJitter(), executorSupplier.get());
+        heartbeat.start(delayMillis);
+    }
+
+    @NotNull
+    private synchronized CompletableFuture<Void> stopHeartbeat() {
+        if (heartbeat == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<Void> stopFuture = heartbeat.stop();
+        heartbeat = null;
+        return stopFuture;
+    }
+
+    private long heartbeatIntervalMillis() {
+        final long updateIntervalInSeconds = etcdClient.getEtcdConfig().getFileUpdateIntervalInSeconds();
+        return updateIntervalInSeconds > 0 ? updateIntervalInSeconds * 1000 : IDLE_HEARTBEAT_INTERVAL_MILLIS;
+    }
+
+    /**
+     * A new connection doesn't share the lease of the old one. The own entry is written with a lease of the new
+     * connection right away, the old lease is only revoked afterwards so the entry stays visible in between.
+     */
+    private void reregister(@NotNull final ClusterDiscoveryInput clusterDiscoveryInput) {
+        if (ownEntryKey == null) {
+            etcdClient.retirePreviousConnection();
+            return;
+        }
+        saveOwnInstance(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress())
+                .handle((ignored, throwable) -> {
+                    if (throwable != null) {
+                        logger.warn("Could not register this node with the new Etcd connection, retrying in the background. {}", throwable.toString());
+                    }
+                    return null;
+                }).join();
+    }
+
+    @NotNull
+    private CompletableFuture<Void> refreshOwnInstance(@NotNull final String ownClusterId, @NotNull final ClusterNodeAddress ownAddress) {
+        if (ownNodeEntry == null || needsRefresh()) {
+            return saveOwnInstance(ownClusterId, ownAddress);
+        }
+        if (!etcdClient.getEtcdConfig().getUseLease()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // the lease is alive but the entry could have been deleted, e.g. by hand or by a node with a wrong clock
+        final String objectKey = ownEntryKey;
+        return etcdClient.existsObject(objectKey).thenCompose(exists -> {
+            if (exists) {
+                return CompletableFuture.completedFuture(null);
             }
+            logger.info("Own Etcd entry '{}' is missing, writing it again.", objectKey);
+            return saveOwnInstance(ownClusterId, ownAddress);
+        });
+    }
+
+    @NotNull
+    private CompletableFuture<Void> saveOwnInstance(@NotNull final String ownClusterId, @NotNull final ClusterNodeAddress ownAddress) {
+        final EtcdConfig etcdConfig = etcdClient.getEtcdConfig();
+        final ClusterNodeEntry newNodeFile = new ClusterNodeEntry(ownClusterId, ownAddress, etcdConfig.getClusterName(), etcdConfig.getZone(), etcdConfig.getRack());
+
+        final String objectKey = DiscoveryKeys.getEntryKey(etcdConfig, ownClusterId);
+        final ByteString content = ClusterNodeEntryCodecs.forFormat(etcdConfig.getEntryFormat()).encode(newNodeFile);
+        final CompletableFuture<Void> saveFuture;
+        if (etcdClient.getEtcdConfig().getUseLease()) {
+            saveFuture = etcdClient.getOrCreateLease().thenCompose(leaseId ->
+                    etcdClient.saveObject(objectKey, content, leaseId).thenRun(() -> ownLeaseId = leaseId));
+        } else {
+            saveFuture = etcdClient.saveObject(objectKey, content);
         }
+        return saveFuture.thenRun(() -> {
+            final String previousEntryKey = ownEntryKey;
+            ownNodeEntry = newNodeFile;
+            ownEntryKey = objectKey;
+            logger.debug("Updated own Etcd entry '{}'.", objectKey);
+            // the entry no longer depends on the lease of a replaced connection
+            etcdClient.retirePreviousConnection();
+            if (previousEntryKey != null && !previousEntryKey.equals(objectKey)) {
+                // the topology labels changed, the entry below the old key would otherwise stay until it expires
+                etcdClient.deleteObject(previousEntryKey).whenComplete((ignored, throwable) -> {
+                    if (throwable != null) {
+                        logger.warn("Could not delete previous own Etcd entry '{}'. {}", previousEntryKey, throwable.toString());
+                    }
+                });
+            }
+        });
+    }
 
-        logger.debug("Found following node addresses with the Etcd extension: {}", nodeAddresses);
+    /**
+     * With lease based registration the own entry only has to be written again if etcd granted a new lease,
+     * e.g. after the old one expired during a network partition, or if it is missing. Otherwise the entry is rewritten on every heartbeat
+     * unless the update interval is deactivated. Changed topology labels are written right away.
+     */
+    private boolean needsRefresh() {
+        final EtcdConfig etcdConfig = etcdClient.getEtcdConfig();
+        final ClusterNodeEntry entry = ownNodeEntry;
+        if (!DiscoveryKeys.getEntryKey(etcdConfig, entry.getClusterId()).equals(ownEntryKey)
+                || !etcdConfig.getRack().equals(entry.getRack() == null ? "" : entry.getRack())) {
+            return true;
+        }
+        if (etcdClient.getEtcdConfig().getUseLease()) {
+            return etcdClient.getLeaseId() != ownLeaseId;
+        }
+        return etcdClient.getEtcdConfig().getFileUpdateIntervalInSeconds() > 0;
+    }
 
-        return nodeAddresses;
+    @NotNull
+    private CompletableFuture<Void> removeOwnFile(@NotNull final String objectKey) {
+        return etcdClient.deleteObject(objectKey).thenRun(() -> {
+            ownNodeEntry = null;
+            ownEntryKey = null;
+            logger.debug("Removed own Etcd entry '{}'.", objectKey);
+        });
     }
 
+    /**
+     * Reads all entries and returns the addresses of the non expired ones. If etcd can't be read the addresses of
+     * the last successful read are returned. Expired entries are deleted in the background with a single
+     * transaction, the returned addresses do not wait for it. With janitor election only the elected node deletes them.
+     * Only the entries of the own cluster name are used and cleaned up; with prefer-same-zone the nodes of the own
+     * zone come first. Entries are only decoded if their mod revision changed since the last read. The outcome of a
+     * successful read schedules the next read of the adaptive refresh.
+     */
     @NotNull
-    private List<ClusterNodeEntry> getNodeEntries() {
-        List<String> objectListing = etcdClient.getObjects(etcdClient.getEtcdConfig().getKey());
-        List<ClusterNodeEntry> clusterNodeEntries = new ArrayList<>();
-        Gson g = new Gson();
-        for (final String nodeString : objectListing) {
-            clusterNodeEntries.add(g.fromJson(nodeString, ClusterNodeEntry.class));
+    private CompletableFuture<List<ClusterNodeAddress>> getNodeAddresses(@NotNull final String ownClusterId) {
+        final long startMillis = System.currentTimeMillis();
+        final String clusterName = etcdClient.getEtcdConfig().getClusterName();
+        final String ownClusterName = clusterName.isEmpty() ? null : clusterName;
+        // entries attached to a lease are removed by etcd itself
+        final long expirationInSeconds = etcdClient.getEtcdConfig().getUseLease() ? 0 : etcdClient.getEtcdConfig().getExpirationInSeconds();
+        final EntryDecodeEvent decodeEvent = new EntryDecodeEvent();
+        decodeEvent.begin();
+        return readNodeEntries(DiscoveryKeys.getClusterPrefix(etcdClient.getEtcdConfig()), ownClusterName, expirationInSeconds, true).handle((collector, throwable) -> {
+            if (throwable != null) {
+                // an empty list would make HiveMQ drop all other nodes, so the last read nodes are kept until etcd recovers
+                final MembershipSnapshot lastMembership = membership;
+                logger.warn("Could not read node entries from Etcd, keeping the last known {} nodes. {}",
+                        lastMembership.getAddresses().size(), throwable.toString());
+                return lastMembership.getAddresses();
+            }
+
+            final Map<String, Long> expiredObjectKeys = collector.expiredObjectKeys;
+            final List<ClusterNodeEntry> nodeEntries = collector.nodeEntries;
+            decodedEntryCache.retain(collector.keys);
+            decodeEvent.end();
+            if (decodeEvent.shouldCommit()) {
+                decodeEvent.entries = collector.keys.size();
+                decodeEvent.invalidEntries = collector.invalidEntries;
+                decodeEvent.expiredEntries = expiredObjectKeys.size();
+                decodeEvent.commit();
+            }
+
+            if (!expiredObjectKeys.isEmpty()) {
+                final CompletableFuture<Boolean> janitorFuture = etcdClient.getEtcdConfig().getUseJanitorElection()
+                        ? etcdClient.acquireJanitor(ownClusterId)
+                        : CompletableFuture.completedFuture(true);
+                janitorFuture.thenCompose(janitor -> janitor ? etcdClient.deleteObjects(expiredObjectKeys) : CompletableFuture.completedFuture(null))
+                        .whenComplete((ignored, deleteThrowable) -> {
+                            if (deleteThrowable != null && Status.fromThrowable(deleteThrowable).getCode() == Status.Code.RESOURCE_EXHAUSTED) {
+                                // cleanup is shed first while requests are limited, the next read tries again
+                                logger.debug("Skipped deleting expired Etcd entries {}. {}", expiredObjectKeys.keySet(), deleteThrowable.toString());
+                            } else if (deleteThrowable != null) {
+                                logger.warn("Could not delete expired Etcd entries {}. {}", expiredObjectKeys.keySet(), deleteThrowable.toString());
+                            }
+                        });
+            }
+
+            final String ownZone = etcdClient.getEtcdConfig().getZone();
+            if (etcdClient.getEtcdConfig().getPreferSameZone() && !ownZone.isEmpty()) {
+                // stable sort, the order within a zone is kept
+                nodeEntries.sort(Comparator.comparing(nodeEntry -> !ownZone.equals(nodeEntry.getZone())));
+            }
+
+            final MembershipSnapshot lastMembership = membership;
+            final MembershipSnapshot nextMembership = updateMembership(nodeEntries, true);
+            final EtcdConfig etcdConfig = etcdClient.getEtcdConfig();
+            adaptiveRefresh.readCompleted(nextMembership != lastMembership, System.currentTimeMillis() - startMillis,
+                    etcdConfig.getAdaptiveRefreshMaxIntervalInSeconds() * 1000, etcdConfig.getRefreshJitter());
+            return nextMembership.getAddresses();
+        });
+    }
+
+    /**
+     * @param read whether the entries were read from etcd, only those are persisted
+     */
+    @NotNull
+    private synchronized MembershipSnapshot updateMembership(@NotNull final List<ClusterNodeEntry> nodeEntries, final boolean read) {
+        final MembershipSnapshot nextMembership = membership.next(nodeEntries);
+        if (read) {
+            persistMembership(nextMembership, nextMembership != membership);
+        }
+        if (nextMembership != membership) {
+            logger.info("Etcd discovery membership changed to version {} with {} nodes, added: {}, removed: {}, changed: {}.",
+                    nextMembership.getVersion(), nextMembership.getAddresses().size(),
+                    nextMembership.getAdded(), nextMembership.getRemoved(), nextMembership.getChanged());
+            membership = nextMembership;
+            getMetrics().setDiscoveredNodes(nextMembership.getAddresses().size());
         }
-        return clusterNodeEntries;
+        return membership;
+    }
 
+    /**
+     * Writes the membership file if the membership changed. An unchanged membership is written again after half
+     * of the max age, so the file of a stable cluster stays usable.
+     */
+    private void persistMembership(@NotNull final MembershipSnapshot nextMembership, final boolean changed) {
+        if (!etcdClient.getEtcdConfig().getPersistMembership()) {
+            return;
+        }
+        final long nowMillis = System.currentTimeMillis();
+        if (!changed && nowMillis - membershipPersistedMillis < etcdClient.getEtcdConfig().getPersistedMembershipMaxAgeInSeconds() * 500) {
+            return;
+        }
+        try {
+            getMembershipFile().write(nextMembership);
+            membershipPersistedMillis = nowMillis;
+        } catch (final IOException ex) {
+            logger.warn("Could not write the membership file. {}", ex.toString());
+        }
+    }
+
+    /**
+     * Reads and decodes the entries below the prefix. If an entry came without its value and is not cached, a read probe
+     * matched a concurrent full read whose values were not decoded yet, so the entries are read once more in full.
+     */
+    @NotNull
+    private CompletableFuture<NodeEntryCollector> readNodeEntries(@NotNull final String prefix, @Nullable final String ownClusterName,
+                                                                  final long expirationInSeconds, final boolean firstAttempt) {
+        final NodeEntryCollector collector = new NodeEntryCollector(ownClusterName, expirationInSeconds, firstAttempt);
+        return etcdClient.getObjects(prefix, collector).thenCompose(ignored -> {
+            if (collector.missingValues) {
+                logger.debug("Etcd entries were read without values that are not cached, reading them again.");
+                etcdClient.invalidateReads();
+                return readNodeEntries(prefix, ownClusterName, expirationInSeconds, false);
+            }
+            return CompletableFuture.completedFuture(collector);
+        });
+    }
+
+    /**
+     * Decodes the entries page by page while they are read, only the decoded entries of the own cluster and the keys
+     * are kept.
+     */
+    private class NodeEntryCollector implements Consumer<KeyValue> {
+
+        private final String ownClusterName;
+        private final long expirationInSeconds;
+        private final boolean skipMissingValues;
+        private final Set<ByteString> keys = new HashSet<>();
+        private final Map<String, Long> expiredObjectKeys = new HashMap<>();
+        private final List<ClusterNodeEntry> nodeEntries = new ArrayList<>();
+        private int invalidEntries;
+        private boolean missingValues;
+
+        NodeEntryCollector(@Nullable final String ownClusterName, final long expirationInSeconds, final boolean skipMissingValues) {
+            this.ownClusterName = ownClusterName;
+            this.expirationInSeconds = expirationInSeconds;
+            this.skipMissingValues = skipMissingValues;
+        }
+
+        @Override
+        public void accept(@NotNull final KeyValue keyValue) {
+            keys.add(keyValue.getKey());
+            if (skipMissingValues && keyValue.getValue().isEmpty() && !decodedEntryCache.contains(keyValue)) {
+                // not an invalid entry, its value is read again
+                missingValues = true;
+                return;
+            }
+            final ClusterNodeEntry nodeFile;
+            try {
+                nodeFile = decodedEntryCache.decode(keyValue);
+            } catch (final RuntimeException ex) {
+                logger.warn("Ignoring Etcd entry '{}' that is not a node entry. {}", keyValue.getKey().toStringUtf8(), ex.toString());
+                invalidEntries++;
+                return;
+            }
+            if (!Objects.equals(ownClusterName, nodeFile.getClusterName())) {
+                // nodes without a cluster name read the entries of the named clusters as well
+                return;
+            }
+
+            if (nodeFile.isExpired(expirationInSeconds)) {
+
+                logger.debug("Etcd entry of node with clusterId {} is expired. Entry will be deleted.", nodeFile.getClusterId());
+
+                expiredObjectKeys.put(keyValue.getKey().toStringUtf8(), keyValue.getModRevision());
+            } else {
+                nodeEntries.add(nodeFile);
+            }
+        }
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.codec;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.annotations.Nullable;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+
+import java.io.IOException;
+
+/**
+ * Compact binary format of the entries:
+ * <pre>
+ * version (1 byte) | clusterId (varint length + UTF-8) | ip (varint length + UTF-8) | port (varint) | creation time in millis (varint)
+ *   [ | cluster name | zone | rack (each varint length + UTF-8, empty if not set) ]
+ * </pre>
+ * Fields added in later versions are appended, so decoders ignore trailing bytes of the version they know.
+ * The topology labels are only written if at least one of them is set.
+ *
+ * @since 4.0.1
+ */
+public class BinaryClusterNodeEntryCodec implements ClusterNodeEntryCodec {
+
+    static final byte VERSION = 1;
+
+    @NotNull
+    @Override
+    public ByteString encode(@NotNull final ClusterNodeEntry clusterNodeEntry) {
+        final boolean hasTopology = clusterNodeEntry.getClusterName() != null || clusterNodeEntry.getZone() != null || clusterNodeEntry.getRack() != null;
+        int size = 1
+                + CodedOutputStream.computeStringSizeNoTag(clusterNodeEntry.getClusterId())
+                + CodedOutputStream.computeStringSizeNoTag(clusterNodeEntry.getClusterNodeIP())
+                + CodedOutputStream.computeUInt32SizeNoTag(clusterNodeEntry.getClusterNodePort())
+                + CodedOutputStream.computeUInt64SizeNoTag(clusterNodeEntry.getCreationTimeInMillis());
+        if (hasTopology) {
+            size += CodedOutputStream.computeStringSizeNoTag(nullToEmpty(clusterNodeEntry.getClusterName()))
+                    + CodedOutputStream.computeStringSizeNoTag(nullToEmpty(clusterNodeEntry.getZone()))
+                    + CodedOutputStream.computeStringSizeNoTag(nullToEmpty(clusterNodeEntry.getRack()));
+        }
+        final byte[] bytes = new byte[size];
+        final CodedOutputStream outputStream = CodedOutputStream.newInstance(bytes);
+        try {
+            outputStream.writeRawByte(VERSION);
+            outputStream.writeStringNoTag(clusterNodeEntry.getClusterId());
+            outputStream.writeStringNoTag(clusterNodeEntry.getClusterNodeIP());
+            outputStream.writeUInt32NoTag(clusterNodeEntry.getClusterNodePort());
+            outputStream.writeUInt64NoTag(clusterNodeEntry.getCreationTimeInMillis());
+            if (hasTopology) {
+                outputStream.writeStringNoTag(nullToEmpty(clusterNodeEntry.getClusterName()));
+                outputStream.writeStringNoTag(nullToEmpty(clusterNodeEntry.getZone()));
+                outputStream.writeStringNoTag(nullToEmpty(clusterNodeEntry.getRack()));
+            }
+            outputStream.checkNoSpaceLeft();
+        } catch (final IOException ex) {
+            throw new IllegalStateException("Could not encode " + clusterNodeEntry, ex);
+        }
+        return ByteString.copyFrom(bytes);
+    }
+
+    @NotNull
+    @Override
+    public ClusterNodeEntry decode(@NotNull final ByteString value) {
+        final CodedInputStream inputStream = value.newCodedInput();
+        try {
+            final byte version = inputStream.readRawByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported entry version " + version + "!");
+            }
+            final String clusterId = inputStream.readStringRequireUtf8();
+            final String clusterNodeIP = inputStream.readStringRequireUtf8();
+            final int clusterNodePort = inputStream.readUInt32();
+            final long creationTimeInMillis = inputStream.readUInt64();
+            if (inputStream.isAtEnd()) {
+                return new ClusterNodeEntry(clusterId, clusterNodeIP, clusterNodePort, creationTimeInMillis);
+            }
+            final String clusterName = inputStream.readStringRequireUtf8();
+            final String zone = inputStream.readStringRequireUtf8();
+            final String rack = inputStream.readStringRequireUtf8();
+            return new ClusterNodeEntry(clusterId, clusterNodeIP, clusterNodePort, creationTimeInMillis, clusterName, zone, rack);
+        } catch (final IOException ex) {
+            throw new IllegalArgumentException("Could not decode entry!", ex);
+        }
+    }
+
+    @NotNull
+    private static String nullToEmpty(@Nullable final String label) {
+        return label == null ? "" : label;
+    }
+}
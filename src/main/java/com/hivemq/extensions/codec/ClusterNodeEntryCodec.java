@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.codec;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+
+/**
+ * Converts a {@link ClusterNodeEntry} to the value stored in etcd and back.
+ *
+ * @since 4.0.1
+ */
+public interface ClusterNodeEntryCodec {
+
+    @NotNull
+    ByteString encode(@NotNull ClusterNodeEntry clusterNodeEntry);
+
+    @NotNull
+    ClusterNodeEntry decode(@NotNull ByteString value);
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.codec;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.annotations.Nullable;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+
+/**
+ * Selects the codec used for writing the own entry and detects the format of read entries,
+ * so nodes writing different formats can be mixed in one cluster.
+ *
+ * @since 4.0.1
+ */
+public class ClusterNodeEntryCodecs {
+
+    public static final String JSON = "json";
+    public static final String BINARY = "binary";
+
+    private static final JsonClusterNodeEntryCodec JSON_CODEC = new JsonClusterNodeEntryCodec();
+    private static final BinaryClusterNodeEntryCodec BINARY_CODEC = new BinaryClusterNodeEntryCodec();
+
+    private ClusterNodeEntryCodecs() {
+    }
+
+    @Nullable
+    public static ClusterNodeEntryCodec forFormat(@NotNull final String format) {
+        switch (format) {
+            case JSON:
+                return JSON_CODEC;
+            case BINARY:
+                return BINARY_CODEC;
+            default:
+                return null;
+        }
+    }
+
+    @NotNull
+    public static ClusterNodeEntry decode(@NotNull final ByteString value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Entry must not be empty!");
+        }
+        // JSON entries start with '{' or whitespace, which are no valid versions of the binary format
+        if (value.byteAt(0) == BinaryClusterNodeEntryCodec.VERSION) {
+            return BINARY_CODEC.decode(value);
+        }
+        return JSON_CODEC.decode(value);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.codec;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import com.ibm.etcd.api.KeyValue;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the decoded entries by their etcd key. etcd gives every change of a key a new mod revision, so an entry is
+ * only decoded again if its revision moved and the decoding work of a read grows with the changed entries instead of
+ * the size of the cluster.
+ *
+ * @since 4.0.1
+ */
+public class DecodedEntryCache {
+
+    private final Map<ByteString, CachedEntry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return the entry of the key value, decoded if its key or mod revision is not cached
+     * @throws RuntimeException if the value is not a node entry, failures are not cached
+     */
+    @NotNull
+    public ClusterNodeEntry decode(@NotNull final KeyValue keyValue) {
+        final CachedEntry cachedEntry = entries.get(keyValue.getKey());
+        if (cachedEntry != null && cachedEntry.modRevision == keyValue.getModRevision()) {
+            return cachedEntry.entry;
+        }
+        final ClusterNodeEntry entry = ClusterNodeEntryCodecs.decode(keyValue.getValue());
+        entries.put(keyValue.getKey(), new CachedEntry(keyValue.getModRevision(), entry));
+        return entry;
+    }
+
+    /**
+     * @return true if the entry of the key value is cached at its mod revision, so it is known without a value
+     */
+    public boolean contains(@NotNull final KeyValue keyValue) {
+        final CachedEntry cachedEntry = entries.get(keyValue.getKey());
+        return cachedEntry != null && cachedEntry.modRevision == keyValue.getModRevision();
+    }
+
+    /**
+     * Evicts the entries of all keys not contained in the given keys, i.e. of deleted keys.
+     */
+    public void retain(@NotNull final Collection<ByteString> keys) {
+        entries.keySet().retainAll(keys instanceof Set ? keys : new HashSet<>(keys));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static class CachedEntry {
+
+        private final long modRevision;
+        private final ClusterNodeEntry entry;
+
+        CachedEntry(final long modRevision, @NotNull final ClusterNodeEntry entry) {
+            this.modRevision = modRevision;
+            this.entry = entry;
+        }
+    }
+}
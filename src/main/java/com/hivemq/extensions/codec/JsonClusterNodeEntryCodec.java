@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+
+/**
+ * The original JSON format of the entries.
+ *
+ * @since 4.0.1
+ */
+public class JsonClusterNodeEntryCodec implements ClusterNodeEntryCodec {
+
+    private static final Gson GSON = new Gson();
+
+    @NotNull
+    @Override
+    public ByteString encode(@NotNull final ClusterNodeEntry clusterNodeEntry) {
+        return ByteString.copyFromUtf8(GSON.toJson(clusterNodeEntry));
+    }
+
+    @NotNull
+    @Override
+    public ClusterNodeEntry decode(@NotNull final ByteString value) {
+        final ClusterNodeEntry clusterNodeEntry;
+        try {
+            clusterNodeEntry = GSON.fromJson(value.toStringUtf8(), ClusterNodeEntry.class);
+        } catch (final JsonParseException ex) {
+            throw new IllegalArgumentException("Could not decode entry!", ex);
+        }
+        // Gson returns null for blank input and does not call the constructor, so the required fields are checked here
+        if (clusterNodeEntry == null) {
+            throw new IllegalArgumentException("Entry must not be blank!");
+        }
+        if (clusterNodeEntry.getClusterId() == null || clusterNodeEntry.getClusterId().isBlank()) {
+            throw new IllegalArgumentException("Entry has no clusterId!");
+        }
+        if (clusterNodeEntry.getClusterNodeIP() == null || clusterNodeEntry.getClusterNodeIP().isBlank()) {
+            throw new IllegalArgumentException("Entry has no clusterNodeIP!");
+        }
+        return clusterNodeEntry;
+    }
+}
@@ -16,6 +16,7 @@ package com.hivemq.extensions.config;
 
 import com.google.gson.Gson;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
+import com.hivemq.extension.sdk.api.annotations.Nullable;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
 
 /**
@@ -25,12 +26,27 @@ import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddres
  */
 public class ClusterNodeEntry {
 
+    private static final Gson GSON = new Gson();
+
     private final String clusterId;
     private final String clusterNodeIP;
     private final int clusterNodePort;
     private final long creationTimeInMillis;
+    private final String clusterName;
+    private final String zone;
+    private final String rack;
 
     public ClusterNodeEntry(@NotNull final String clusterId, @NotNull final ClusterNodeAddress clusterNodeAddress) {
+        this(clusterId, clusterNodeAddress, null, null, null);
+    }
+
+    /**
+     * @param clusterName the name of the HiveMQ cluster, null or empty if not set
+     * @param zone        the availability zone of the node, null or empty if not set
+     * @param rack        the rack of the node, null or empty if not set
+     */
+    public ClusterNodeEntry(@NotNull final String clusterId, @NotNull final ClusterNodeAddress clusterNodeAddress,
+                            @Nullable final String clusterName, @Nullable final String zone, @Nullable final String rack) {
         if (clusterId == null) {
             throw new NullPointerException("ClusterId must not be null!");
         }
@@ -45,6 +61,39 @@ public class ClusterNodeEntry {
         this.clusterNodeIP = clusterNodeAddress.getHost();
         this.clusterNodePort = clusterNodeAddress.getPort();
         this.creationTimeInMillis = System.currentTimeMillis();
+        this.clusterName = emptyToNull(clusterName);
+        this.zone = emptyToNull(zone);
+        this.rack = emptyToNull(rack);
+    }
+
+    public ClusterNodeEntry(@NotNull final String clusterId, @NotNull final String clusterNodeIP, final int clusterNodePort, final long creationTimeInMillis) {
+        this(clusterId, clusterNodeIP, clusterNodePort, creationTimeInMillis, null, null, null);
+    }
+
+    public ClusterNodeEntry(@NotNull final String clusterId, @NotNull final String clusterNodeIP, final int clusterNodePort, final long creationTimeInMillis,
+                            @Nullable final String clusterName, @Nullable final String zone, @Nullable final String rack) {
+        if (clusterId == null) {
+            throw new NullPointerException("ClusterId must not be null!");
+        }
+        if (clusterId.isBlank()) {
+            throw new IllegalArgumentException("ClusterId must not empty!");
+        }
+        if (clusterNodeIP == null) {
+            throw new NullPointerException("ClusterNodeIP must not be null!");
+        }
+
+        this.clusterId = clusterId;
+        this.clusterNodeIP = clusterNodeIP;
+        this.clusterNodePort = clusterNodePort;
+        this.creationTimeInMillis = creationTimeInMillis;
+        this.clusterName = emptyToNull(clusterName);
+        this.zone = emptyToNull(zone);
+        this.rack = emptyToNull(rack);
+    }
+
+    @Nullable
+    private static String emptyToNull(@Nullable final String label) {
+        return label == null || label.isEmpty() ? null : label;
     }
 
     @NotNull
@@ -52,6 +101,34 @@ public class ClusterNodeEntry {
         return clusterId;
     }
 
+    @NotNull
+    public String getClusterNodeIP() {
+        return clusterNodeIP;
+    }
+
+    public int getClusterNodePort() {
+        return clusterNodePort;
+    }
+
+    public long getCreationTimeInMillis() {
+        return creationTimeInMillis;
+    }
+
+    @Nullable
+    public String getClusterName() {
+        return clusterName;
+    }
+
+    @Nullable
+    public String getZone() {
+        return zone;
+    }
+
+    @Nullable
+    public String getRack() {
+        return rack;
+    }
+
     @NotNull
     public ClusterNodeAddress getClusterNodeAddress() {
         return new ClusterNodeAddress(clusterNodeIP, clusterNodePort);
@@ -67,8 +144,7 @@ public class ClusterNodeEntry {
     }
 
     public String toJson() {
-        Gson g = new Gson();
-        return g.toJson(this);
+        return GSON.toJson(this);
     }
 
     @Override
@@ -78,6 +154,9 @@ public class ClusterNodeEntry {
                 ", clusterNodeIP='" + clusterNodeIP + '\'' +
                 ", clusterNodePort=" + clusterNodePort +
                 ", creationTimeInMillis=" + creationTimeInMillis +
+                ", clusterName='" + clusterName + '\'' +
+                ", zone='" + zone + '\'' +
+                ", rack='" + rack + '\'' +
                 '}';
     }
 }
@@ -17,6 +17,7 @@ package com.hivemq.extensions.config;
 import com.hivemq.extension.sdk.api.annotations.NotNull;
 import com.hivemq.extension.sdk.api.annotations.Nullable;
 import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extensions.codec.ClusterNodeEntryCodecs;
 import org.aeonbits.owner.ConfigFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,10 +41,23 @@ public class ConfigurationReader {
 
     private final File extensionHomeFolder;
 
+    private EtcdConfig cachedEtcdConfig;
+    private long cachedLastModified;
+    private long cachedLength;
+
     public ConfigurationReader(@NotNull final ExtensionInformation extensionInformation) {
         this.extensionHomeFolder = extensionInformation.getExtensionHomeFolder();
     }
 
+    @NotNull
+    public File getExtensionHomeFolder() {
+        return extensionHomeFolder;
+    }
+
+    /**
+     * Reads the configuration. The parsed configuration is cached and only read again when the modification time
+     * or the size of the properties file changed, so unchanged files return the same instance.
+     */
     @Nullable
     public EtcdConfig readConfiguration() {
         final File propertiesFile = new File(extensionHomeFolder, ETCD_CONFIG_FILE);
@@ -58,6 +72,13 @@ public class ConfigurationReader {
             return null;
         }
 
+        final long lastModified = propertiesFile.lastModified();
+        final long length = propertiesFile.length();
+        if (cachedEtcdConfig != null && lastModified == cachedLastModified && length == cachedLength) {
+            logger.trace("Properties file '{}' is unchanged.", propertiesFile.getAbsolutePath());
+            return cachedEtcdConfig;
+        }
+
         Properties properties = null;
         try (final InputStream inputStream = new FileInputStream(propertiesFile)) {
 
@@ -79,6 +100,9 @@ public class ConfigurationReader {
             etcdConfig.setProperty("key", etcdConfig.getKey() + "/");
         }
 
+        cachedEtcdConfig = etcdConfig;
+        cachedLastModified = lastModified;
+        cachedLength = length;
         return etcdConfig;
     }
 
@@ -136,6 +160,90 @@ public class ConfigurationReader {
             }
         }
 
+        if (etcdConfig.getReadMaxStalenessInSeconds() < 0) {
+            logger.error("Etcd Discovery Extension - Read max staleness is negative!");
+            return false;
+        }
+
+        if (etcdConfig.getRangePageSize() < 0) {
+            logger.error("Etcd Discovery Extension - Range page size is negative!");
+            return false;
+        }
+
+        if (etcdConfig.getReadTimeoutInMillis() < 0 || etcdConfig.getWriteTimeoutInMillis() < 0) {
+            logger.error("Etcd Discovery Extension - Request timeout is negative!");
+            return false;
+        }
+
+        if (etcdConfig.getShutdownTimeoutInMillis() < 0) {
+            logger.error("Etcd Discovery Extension - Shutdown timeout is negative!");
+            return false;
+        }
+
+        if (etcdConfig.getRequestRate() < 0 || etcdConfig.getMaxInFlightRequests() < 0) {
+            logger.error("Etcd Discovery Extension - Request rate or max in-flight requests is negative!");
+            return false;
+        }
+
+        if (etcdConfig.getRequestRate() > 0 && etcdConfig.getRequestBurst() < 1) {
+            logger.error("Etcd Discovery Extension - Request burst must be at least 1!");
+            return false;
+        }
+
+        if (etcdConfig.getMaxRetries() < 0) {
+            logger.error("Etcd Discovery Extension - Max retries is negative!");
+            return false;
+        }
+
+        if (etcdConfig.getCircuitBreakerThreshold() < 0 || etcdConfig.getCircuitBreakerOpenTimeInSeconds() < 0) {
+            logger.error("Etcd Discovery Extension - Circuit breaker threshold or open time is negative!");
+            return false;
+        }
+
+        if (etcdConfig.getPersistedMembershipMaxAgeInSeconds() < 0) {
+            logger.error("Etcd Discovery Extension - Persisted membership max age is negative!");
+            return false;
+        }
+
+        for (final String label : new String[]{etcdConfig.getClusterName(), etcdConfig.getZone(), etcdConfig.getRack()}) {
+            if (label.contains("/") || (!label.isEmpty() && label.isBlank())) {
+                logger.error("Etcd Discovery Extension - Topology label '{}' must not contain '/' or consist of whitespace only!", label);
+                return false;
+            }
+        }
+
+        if (etcdConfig.getChannelThreads() < 0 || etcdConfig.getMaxInboundMessageSize() < 0) {
+            logger.error("Etcd Discovery Extension - Channel threads or max inbound message size is negative!");
+            return false;
+        }
+
+        if (etcdConfig.getRefreshJitter() < 0 || etcdConfig.getRefreshJitter() > 0.5) {
+            logger.error("Etcd Discovery Extension - Refresh jitter must be between 0 and 0.5!");
+            return false;
+        }
+
+        if (etcdConfig.getAdaptiveRefresh()) {
+            final long maxIntervalInSeconds = etcdConfig.getAdaptiveRefreshMaxIntervalInSeconds();
+            if (maxIntervalInSeconds <= 0) {
+                logger.error("Etcd Discovery Extension - Adaptive refresh max interval must be positive!");
+                return false;
+            }
+            if (fileUpdateIntervalInSeconds > 0 && maxIntervalInSeconds > fileUpdateIntervalInSeconds) {
+                logger.error("Etcd Discovery Extension - Adaptive refresh max interval is larger than the update interval!");
+                return false;
+            }
+        }
+
+        if (ClusterNodeEntryCodecs.forFormat(etcdConfig.getEntryFormat()) == null) {
+            logger.error("Etcd Discovery Extension - Entry format '{}' is unknown!", etcdConfig.getEntryFormat());
+            return false;
+        }
+
+        if (etcdConfig.getUseLease() && fileExpirationInSeconds == 0) {
+            logger.error("Etcd Discovery Extension - Lease based registration requires an expiration interval!");
+            return false;
+        }
+
         return true;
     }
 }
\ No newline at end of file
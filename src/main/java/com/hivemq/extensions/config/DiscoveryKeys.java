@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.config;
+
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+
+/**
+ * Key layout of the entries. The configured topology labels are part of the key, so a node only reads the entries
+ * of its own cluster:
+ * <pre>
+ * {key}[_cluster/{cluster-name}/][_zone/{zone}/]{clusterId}
+ * </pre>
+ * The reserved segments keep the prefixes of different cluster names and zones apart. Nodes without a cluster name
+ * read the whole key, they ignore the entries of named clusters by the cluster name stored in each entry.
+ *
+ * @since 4.0.1
+ */
+public final class DiscoveryKeys {
+
+    private static final String JANITOR_KEY_SUFFIX = ".janitor";
+    private static final String CLUSTER_SEGMENT = "_cluster/";
+    private static final String ZONE_SEGMENT = "_zone/";
+
+    private DiscoveryKeys() {
+    }
+
+    /**
+     * @return the prefix of all entries of the own cluster
+     */
+    @NotNull
+    public static String getClusterPrefix(@NotNull final EtcdConfig etcdConfig) {
+        return etcdConfig.getKey() + label(CLUSTER_SEGMENT, etcdConfig.getClusterName());
+    }
+
+    @NotNull
+    public static String getEntryKey(@NotNull final EtcdConfig etcdConfig, @NotNull final String clusterId) {
+        return getClusterPrefix(etcdConfig) + label(ZONE_SEGMENT, etcdConfig.getZone()) + clusterId;
+    }
+
+    /**
+     * @return the key of the janitor election of the own cluster, it is located next to the key and not below it
+     */
+    @NotNull
+    public static String getJanitorKey(@NotNull final EtcdConfig etcdConfig) {
+        final String key = etcdConfig.getKey();
+        final String clusterName = etcdConfig.getClusterName();
+        return key.substring(0, key.length() - 1) + JANITOR_KEY_SUFFIX + (clusterName.isEmpty() ? "" : "." + clusterName);
+    }
+
+    @NotNull
+    private static String label(@NotNull final String segment, @NotNull final String label) {
+        return label.isEmpty() ? "" : segment + label + "/";
+    }
+}
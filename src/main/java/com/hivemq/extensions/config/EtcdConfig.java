@@ -49,6 +49,122 @@ public interface EtcdConfig extends Config, Mutable {
     @DefaultValue("")
     String caPathEnv();
 
+    @Key("HIVEMQ_ETCD_USE_LEASE")
+    @DefaultValue("false")
+    String leaseEnv();
+
+    @Key("HIVEMQ_ETCD_USE_WATCH")
+    @DefaultValue("false")
+    String watchEnv();
+
+    @Key("HIVEMQ_ETCD_USE_JANITOR_ELECTION")
+    @DefaultValue("false")
+    String janitorElectionEnv();
+
+    @Key("HIVEMQ_ETCD_ENTRY_FORMAT")
+    @DefaultValue("json")
+    String entryFormatEnv();
+
+    @Key("HIVEMQ_ETCD_READ_PROBE")
+    @DefaultValue("false")
+    String readProbeEnv();
+
+    @Key("HIVEMQ_ETCD_SERIALIZABLE_READS")
+    @DefaultValue("false")
+    String serializableReadsEnv();
+
+    @Key("HIVEMQ_ETCD_READ_MAX_STALENESS")
+    @DefaultValue("60")
+    int readMaxStalenessEnv();
+
+    @Key("HIVEMQ_ETCD_RANGE_PAGE_SIZE")
+    @DefaultValue("500")
+    int rangePageSizeEnv();
+
+    @Key("HIVEMQ_ETCD_READ_TIMEOUT")
+    @DefaultValue("5000")
+    int readTimeoutEnv();
+
+    @Key("HIVEMQ_ETCD_WRITE_TIMEOUT")
+    @DefaultValue("5000")
+    int writeTimeoutEnv();
+
+    @Key("HIVEMQ_ETCD_MAX_RETRIES")
+    @DefaultValue("2")
+    int maxRetriesEnv();
+
+    @Key("HIVEMQ_ETCD_CIRCUIT_BREAKER_THRESHOLD")
+    @DefaultValue("5")
+    int circuitBreakerThresholdEnv();
+
+    @Key("HIVEMQ_ETCD_CIRCUIT_BREAKER_OPEN_TIME")
+    @DefaultValue("30")
+    int circuitBreakerOpenTimeEnv();
+
+    @Key("HIVEMQ_ETCD_PERSIST_MEMBERSHIP")
+    @DefaultValue("false")
+    String persistMembershipEnv();
+
+    @Key("HIVEMQ_ETCD_PERSISTED_MEMBERSHIP_MAX_AGE")
+    @DefaultValue("300")
+    int persistedMembershipMaxAgeEnv();
+
+    @Key("HIVEMQ_ETCD_CLUSTER_NAME")
+    @DefaultValue("")
+    String clusterNameEnv();
+
+    @Key("HIVEMQ_ETCD_ZONE")
+    @DefaultValue("")
+    String zoneEnv();
+
+    @Key("HIVEMQ_ETCD_RACK")
+    @DefaultValue("")
+    String rackEnv();
+
+    @Key("HIVEMQ_ETCD_PREFER_SAME_ZONE")
+    @DefaultValue("false")
+    String preferSameZoneEnv();
+
+    @Key("HIVEMQ_ETCD_CHANNEL_THREADS")
+    @DefaultValue("0")
+    int channelThreadsEnv();
+
+    @Key("HIVEMQ_ETCD_MAX_INBOUND_MESSAGE_SIZE")
+    @DefaultValue("0")
+    int maxInboundMessageSizeEnv();
+
+    @Key("HIVEMQ_ETCD_USE_EXTENSION_EXECUTOR")
+    @DefaultValue("false")
+    String useExtensionExecutorEnv();
+
+    @Key("HIVEMQ_ETCD_REFRESH_JITTER")
+    @DefaultValue("0.1")
+    double refreshJitterEnv();
+
+    @Key("HIVEMQ_ETCD_ADAPTIVE_REFRESH")
+    @DefaultValue("false")
+    String adaptiveRefreshEnv();
+
+    @Key("HIVEMQ_ETCD_ADAPTIVE_REFRESH_MAX_INTERVAL")
+    @DefaultValue("30")
+    int adaptiveRefreshMaxIntervalEnv();
+
+    @Key("HIVEMQ_ETCD_SHUTDOWN_TIMEOUT")
+    @DefaultValue("5000")
+    int shutdownTimeoutEnv();
+
+    @Key("HIVEMQ_ETCD_REQUEST_RATE")
+    @DefaultValue("0")
+    int requestRateEnv();
+
+    @Key("HIVEMQ_ETCD_REQUEST_BURST")
+    @DefaultValue("100")
+    int requestBurstEnv();
+
+    @Key("HIVEMQ_ETCD_MAX_IN_FLIGHT_REQUESTS")
+    @DefaultValue("0")
+    int maxInFlightRequestsEnv();
+
     @Key("key")
     @NotNull
     @DefaultValue("${HIVEMQ_ETCD_KEY}")
@@ -84,4 +200,148 @@ public interface EtcdConfig extends Config, Mutable {
     @DefaultValue("${HIVEMQ_ETCD_CA_PATH}")
     String getCAPath();
 
+    @Key("use-lease")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_USE_LEASE}")
+    boolean getUseLease();
+
+    @Key("use-watch")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_USE_WATCH}")
+    boolean getUseWatch();
+
+    @Key("use-janitor-election")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_USE_JANITOR_ELECTION}")
+    boolean getUseJanitorElection();
+
+    @Key("entry-format")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_ENTRY_FORMAT}")
+    String getEntryFormat();
+
+    @Key("read-probe")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_READ_PROBE}")
+    boolean getReadProbe();
+
+    @Key("serializable-reads")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_SERIALIZABLE_READS}")
+    boolean getSerializableReads();
+
+    @Key("read-max-staleness")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_READ_MAX_STALENESS}")
+    Long getReadMaxStalenessInSeconds();
+
+    @Key("range-page-size")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_RANGE_PAGE_SIZE}")
+    int getRangePageSize();
+
+    @Key("read-timeout")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_READ_TIMEOUT}")
+    Long getReadTimeoutInMillis();
+
+    @Key("write-timeout")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_WRITE_TIMEOUT}")
+    Long getWriteTimeoutInMillis();
+
+    @Key("max-retries")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_MAX_RETRIES}")
+    int getMaxRetries();
+
+    @Key("circuit-breaker-threshold")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_CIRCUIT_BREAKER_THRESHOLD}")
+    int getCircuitBreakerThreshold();
+
+    @Key("circuit-breaker-open-time")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_CIRCUIT_BREAKER_OPEN_TIME}")
+    Long getCircuitBreakerOpenTimeInSeconds();
+
+    @Key("persist-membership")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_PERSIST_MEMBERSHIP}")
+    boolean getPersistMembership();
+
+    @Key("persisted-membership-max-age")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_PERSISTED_MEMBERSHIP_MAX_AGE}")
+    Long getPersistedMembershipMaxAgeInSeconds();
+
+    @Key("cluster-name")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_CLUSTER_NAME}")
+    String getClusterName();
+
+    @Key("zone")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_ZONE}")
+    String getZone();
+
+    @Key("rack")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_RACK}")
+    String getRack();
+
+    @Key("prefer-same-zone")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_PREFER_SAME_ZONE}")
+    boolean getPreferSameZone();
+
+    @Key("channel-threads")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_CHANNEL_THREADS}")
+    int getChannelThreads();
+
+    @Key("max-inbound-message-size")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_MAX_INBOUND_MESSAGE_SIZE}")
+    int getMaxInboundMessageSize();
+
+    @Key("use-extension-executor")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_USE_EXTENSION_EXECUTOR}")
+    boolean getUseExtensionExecutor();
+
+    @Key("refresh-jitter")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_REFRESH_JITTER}")
+    double getRefreshJitter();
+
+    @Key("adaptive-refresh")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_ADAPTIVE_REFRESH}")
+    boolean getAdaptiveRefresh();
+
+    @Key("adaptive-refresh-max-interval")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_ADAPTIVE_REFRESH_MAX_INTERVAL}")
+    Long getAdaptiveRefreshMaxIntervalInSeconds();
+
+    @Key("shutdown-timeout")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_SHUTDOWN_TIMEOUT}")
+    Long getShutdownTimeoutInMillis();
+
+    @Key("request-rate")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_REQUEST_RATE}")
+    int getRequestRate();
+
+    @Key("request-burst")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_REQUEST_BURST}")
+    int getRequestBurst();
+
+    @Key("max-in-flight-requests")
+    @NotNull
+    @DefaultValue("${HIVEMQ_ETCD_MAX_IN_FLIGHT_REQUESTS}")
+    int getMaxInFlightRequests();
 }
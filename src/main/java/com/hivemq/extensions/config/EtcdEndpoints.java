@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.config;
+
+import com.hivemq.extension.sdk.api.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the configured etcd endpoints. Multiple endpoints are separated by commas, every endpoint may carry its own
+ * port ({@code host:port} or {@code [ipv6]:port}), otherwise the configured default port is used. An IPv6 address
+ * without brackets can't carry a port, it is put in brackets before the default port is appended.
+ *
+ * @since 4.0.1
+ */
+public class EtcdEndpoints {
+
+    private EtcdEndpoints() {
+    }
+
+    @NotNull
+    public static List<String> parse(@NotNull final String endpoints, final int defaultPort) {
+        if (endpoints == null) {
+            throw new NullPointerException("Endpoints must not be null!");
+        }
+        final List<String> parsedEndpoints = new ArrayList<>();
+        for (final String endpoint : endpoints.split(",")) {
+            final String trimmedEndpoint = endpoint.trim();
+            if (trimmedEndpoint.isEmpty()) {
+                continue;
+            }
+            if (hasPort(trimmedEndpoint)) {
+                parsedEndpoints.add(trimmedEndpoint);
+            } else if (isUnbracketedIpv6(trimmedEndpoint)) {
+                parsedEndpoints.add("[" + trimmedEndpoint + "]:" + defaultPort);
+            } else {
+                parsedEndpoints.add(trimmedEndpoint + ":" + defaultPort);
+            }
+        }
+        return parsedEndpoints;
+    }
+
+    private static boolean hasPort(@NotNull final String endpoint) {
+        if (endpoint.startsWith("[")) {
+            return endpoint.contains("]:");
+        }
+        return endpoint.indexOf(':') >= 0 && endpoint.indexOf(':') == endpoint.lastIndexOf(':');
+    }
+
+    private static boolean isUnbracketedIpv6(@NotNull final String endpoint) {
+        return !endpoint.startsWith("[") && endpoint.indexOf(':') != endpoint.lastIndexOf(':');
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The load of the configuration, including the build of a new etcd connection if its settings changed.
+ *
+ * @since 4.0.1
+ */
+@Name("com.hivemq.extensions.etcd.ConfigurationLoad")
+@Label("Etcd Discovery Configuration Load")
+@Category({"HiveMQ", "Etcd Discovery"})
+@Description("The configuration of the etcd discovery extension loaded before a discovery")
+@StackTrace(false)
+public class ConfigurationLoadEvent extends jdk.jfr.Event {
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Changed")
+    @Description("Whether the configuration differed from the last loaded one")
+    public boolean changed;
+
+    @Label("Connection Built")
+    @Description("Whether a new etcd connection was built")
+    public boolean connectionBuilt;
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call of init, reload or destroy of the discovery callback.
+ *
+ * @since 4.0.1
+ */
+@Name("com.hivemq.extensions.etcd.DiscoveryCallback")
+@Label("Etcd Discovery Callback")
+@Category({"HiveMQ", "Etcd Discovery"})
+@Description("A discovery callback of HiveMQ handled by the etcd discovery extension")
+@StackTrace(false)
+public class DiscoveryCallbackEvent extends jdk.jfr.Event {
+
+    public static final String SOURCE_ETCD = "etcd";
+    public static final String SOURCE_PERSISTED = "persisted";
+    public static final String SOURCE_LAST_READ = "last-read";
+
+    @Label("Callback")
+    @Description("init, reload or destroy")
+    public String callback;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Provided Nodes")
+    public int nodes;
+
+    @Label("Source")
+    @Description("Where the provided nodes came from: etcd, persisted or last-read")
+    public String source;
+
+    @Label("Membership Version")
+    public long membershipVersion;
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The decoding of the read node entries and the check for expired ones.
+ *
+ * @since 4.0.1
+ */
+@Name("com.hivemq.extensions.etcd.EntryDecode")
+@Label("Etcd Entry Decode")
+@Category({"HiveMQ", "Etcd Discovery"})
+@Description("Node entries read from etcd decoded by the etcd discovery extension")
+@StackTrace(false)
+public class EntryDecodeEvent extends jdk.jfr.Event {
+
+    @Label("Entries")
+    public int entries;
+
+    @Label("Invalid Entries")
+    @Description("Entries that could not be decoded")
+    public int invalidEntries;
+
+    @Label("Expired Entries")
+    public int expiredEntries;
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hivemq.extensions.jfr;
+
+import com.hivemq.extension.sdk.api.annotations.Nullable;
+import com.ibm.etcd.api.DeleteRangeResponse;
+import com.ibm.etcd.api.PutResponse;
+import com.ibm.etcd.api.RangeResponse;
+import com.ibm.etcd.api.TxnResponse;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A single attempt of an etcd request, a retried request records one event per attempt.
+ *
+ * @since 4.0.1
+ */
+@Name("com.hivemq.extensions.etcd.EtcdOperation")
+@Label("Etcd Operation")
+@Category({"HiveMQ", "Etcd Discovery"})
+@Description("A request sent to etcd by the etcd discovery extension")
+@StackTrace(false)
+public class EtcdOperationEvent extends jdk.jfr.Event {
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String TIMEOUT = "timeout";
+    public static final String REJECTED = "rejected";
+    public static final String SHED = "shed";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Attempt")
+    @Description("1 for the first attempt, higher for retries")
+    public int attempt;
+
+    @Label("Outcome")
+    @Description("success, error, timeout, rejected by the open circuit breaker or shed by the request limiter")
+    public String outcome;
+
+    @Label("Key Count")
+    @Description("Keys returned or counted by a range, deleted by a delete or operations of a transaction")
+    public long keyCount;
+
+    @Label("Response Size")
+    @DataAmount
+    public long responseBytes;
+
+    @Label("Revision")
+    @Description("The etcd revision the response was created at")
+    public long revision;
+
+    /**
+     * Fills the key count, response size and revision from an etcd response.
+     */
+    public void setResponse(@Nullable final Object response) {
+        if (response instanceof RangeResponse) {
+            final RangeResponse rangeResponse = (RangeResponse) response;
+            // a count-only range returns no key values, only the count
+            keyCount = rangeResponse.getKvsCount() == 0 ? rangeResponse.getCount() : rangeResponse.getKvsCount();
+            responseBytes = rangeResponse.getSerializedSize();
+            revision = rangeResponse.getHeader().getRevision();
+        } else if (response instanceof PutResponse) {
+            final PutResponse putResponse = (PutResponse) response;
+            keyCount = 1;
+            responseBytes = putResponse.getSerializedSize();
+            revision = putResponse.getHeader().getRevision();
+        } else if (response instanceof DeleteRangeResponse) {
+            final DeleteRangeResponse deleteResponse = (DeleteRangeResponse) response;
+            keyCount = deleteResponse.getDeleted();
+            responseBytes = deleteResponse.getSerializedSize();
+            revision = deleteResponse.getHeader().getRevision();
+        } else if (response instanceof TxnResponse) {
+            final TxnResponse txnResponse = (TxnResponse) response;
+            keyCount = txnResponse.getResponsesCount();
+            responseBytes = txnResponse.getSerializedSize();
+            revision = txnResponse.getHeader().getRevision();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.hivemq.extensions;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveRefreshTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AdaptiveRefresh adaptiveRefresh = new AdaptiveRefresh(clock::get);
+
+    @Test
+    public void test_reads_until_first_read() {
+        assertTrue(adaptiveRefresh.shouldRead());
+    }
+
+    @Test
+    public void test_interval_doubles_while_stable() {
+        adaptiveRefresh.readCompleted(false, 5, 8_000, 0);
+        assertEquals(1_000, adaptiveRefresh.getIntervalMillis());
+        adaptiveRefresh.readCompleted(false, 5, 8_000, 0);
+        assertEquals(2_000, adaptiveRefresh.getIntervalMillis());
+        adaptiveRefresh.readCompleted(false, 5, 8_000, 0);
+        adaptiveRefresh.readCompleted(false, 5, 8_000, 0);
+        adaptiveRefresh.readCompleted(false, 5, 8_000, 0);
+        assertEquals(8_000, adaptiveRefresh.getIntervalMillis());
+
+        assertFalse(adaptiveRefresh.shouldRead());
+        clock.set(8_000);
+        assertTrue(adaptiveRefresh.shouldRead());
+    }
+
+    @Test
+    public void test_change_reads_on_next_reload() {
+        adaptiveRefresh.readCompleted(false, 5, 8_000, 0);
+        adaptiveRefresh.readCompleted(false, 5, 8_000, 0);
+        adaptiveRefresh.readCompleted(true, 5, 8_000, 0);
+        assertEquals(0, adaptiveRefresh.getIntervalMillis());
+        assertTrue(adaptiveRefresh.shouldRead());
+    }
+
+    @Test
+    public void test_rising_latency_backs_off_to_max_interval() {
+        for (int i = 0; i < 20; i++) {
+            adaptiveRefresh.readCompleted(true, 20, 8_000, 0);
+        }
+        assertEquals(0, adaptiveRefresh.getIntervalMillis());
+
+        adaptiveRefresh.readCompleted(true, 200, 8_000, 0);
+        assertEquals(8_000, adaptiveRefresh.getIntervalMillis());
+        assertFalse(adaptiveRefresh.shouldRead());
+    }
+
+    @Test
+    public void test_jitter_shortens_interval() {
+        for (int i = 0; i < 5; i++) {
+            adaptiveRefresh.readCompleted(false, 5, 8_000, 0.5);
+        }
+        clock.set(3_999);
+        assertFalse(adaptiveRefresh.shouldRead());
+        clock.set(8_000);
+        assertTrue(adaptiveRefresh.shouldRead());
+    }
+}
@@ -0,0 +1,93 @@
+package com.hivemq.extensions;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(clock::get);
+
+    @Before
+    public void setUp() {
+        circuitBreaker.configure(3, 1_000);
+    }
+
+    @Test
+    public void test_opens_after_threshold() {
+        assertFalse(circuitBreaker.onFailure());
+        assertFalse(circuitBreaker.onFailure());
+        assertTrue(circuitBreaker.allowRequest());
+        assertTrue(circuitBreaker.onFailure());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void test_success_resets_failures() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        assertFalse(circuitBreaker.onFailure());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void test_single_trial_request_after_open_time() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        clock.set(1_000);
+        assertTrue(circuitBreaker.allowRequest());
+        assertFalse(circuitBreaker.allowRequest());
+
+        circuitBreaker.onSuccess();
+        assertTrue(circuitBreaker.allowRequest());
+        assertFalse(circuitBreaker.isOpen());
+    }
+
+    @Test
+    public void test_failed_trial_request_opens_again() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        clock.set(1_000);
+        assertTrue(circuitBreaker.allowRequest());
+        assertTrue(circuitBreaker.onFailure());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void test_hanging_trial_request_replaced() {
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+
+        clock.set(1_000);
+        assertTrue(circuitBreaker.allowRequest());
+        clock.set(1_000 + CircuitBreaker.TRIAL_TIMEOUT_MILLIS - 1);
+        assertFalse(circuitBreaker.allowRequest());
+
+        // the first trial never finishes, e.g. without request timeouts
+        clock.set(1_000 + CircuitBreaker.TRIAL_TIMEOUT_MILLIS);
+        assertTrue(circuitBreaker.allowRequest());
+        assertFalse(circuitBreaker.allowRequest());
+        circuitBreaker.onSuccess();
+        assertFalse(circuitBreaker.isOpen());
+    }
+
+    @Test
+    public void test_threshold_zero_never_opens() {
+        circuitBreaker.configure(0, 1_000);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(circuitBreaker.onFailure());
+        }
+        assertTrue(circuitBreaker.allowRequest());
+    }
+}
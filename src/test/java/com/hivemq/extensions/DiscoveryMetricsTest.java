@@ -0,0 +1,49 @@
+package com.hivemq.extensions;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.grpc.Status;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+public class DiscoveryMetricsTest {
+
+    private final DiscoveryMetrics metrics = new DiscoveryMetrics();
+
+    @Test
+    public void test_time_success() {
+        metrics.time(DiscoveryMetrics.PUT, CompletableFuture.completedFuture(null));
+        Assert.assertEquals(1, ((Timer) metrics.getMetrics().get(DiscoveryMetrics.PREFIX + "etcd.put.time")).getCount());
+        Assert.assertEquals(0, ((Counter) metrics.getMetrics().get(DiscoveryMetrics.PREFIX + "etcd.put.error.count")).getCount());
+    }
+
+    @Test
+    public void test_operation_metrics_visible_after_register_all() {
+        final MetricRegistry hivemqRegistry = new MetricRegistry();
+        hivemqRegistry.registerAll(metrics);
+
+        metrics.time(DiscoveryMetrics.TXN, CompletableFuture.failedFuture(Status.UNAVAILABLE.asRuntimeException()));
+        metrics.operationRetried(DiscoveryMetrics.RANGE);
+        metrics.operationRejected(DiscoveryMetrics.PUT);
+        metrics.operationShed(DiscoveryMetrics.DELETE);
+
+        Assert.assertEquals(1, hivemqRegistry.timer(DiscoveryMetrics.PREFIX + "etcd.txn.time").getCount());
+        Assert.assertEquals(1, hivemqRegistry.counter(DiscoveryMetrics.PREFIX + "etcd.txn.error.count").getCount());
+        Assert.assertEquals(1, hivemqRegistry.counter(DiscoveryMetrics.PREFIX + "etcd.range.retry.count").getCount());
+        Assert.assertEquals(1, hivemqRegistry.counter(DiscoveryMetrics.PREFIX + "etcd.put.rejected.count").getCount());
+        Assert.assertEquals(1, hivemqRegistry.counter(DiscoveryMetrics.PREFIX + "etcd.delete.shed.count").getCount());
+        Assert.assertNotNull(hivemqRegistry.getTimers().get(DiscoveryMetrics.PREFIX + "etcd.lease-revoke.time"));
+    }
+
+    @Test
+    public void test_time_error_and_timeout_counted_separately() {
+        metrics.time(DiscoveryMetrics.RANGE, CompletableFuture.failedFuture(Status.UNAVAILABLE.asRuntimeException()));
+        metrics.time(DiscoveryMetrics.RANGE, CompletableFuture.failedFuture(Status.DEADLINE_EXCEEDED.asRuntimeException()));
+        metrics.time(DiscoveryMetrics.RANGE, CompletableFuture.failedFuture(Status.DEADLINE_EXCEEDED.asRuntimeException()));
+        Assert.assertEquals(1, ((Counter) metrics.getMetrics().get(DiscoveryMetrics.PREFIX + "etcd.range.error.count")).getCount());
+        Assert.assertEquals(2, ((Counter) metrics.getMetrics().get(DiscoveryMetrics.PREFIX + "etcd.range.timeout.count")).getCount());
+    }
+}
@@ -0,0 +1,120 @@
+package com.hivemq.extensions;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extensions.config.ConfigurationReader;
+import com.hivemq.extensions.etcd.InProcessEtcd;
+import com.ibm.etcd.api.KeyValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EtcdClientTest {
+
+    private static final String PREFIX = "discovery/";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private InProcessEtcd etcd;
+    private EtcdClient etcdClient;
+
+    @Before
+    public void setUp() throws Exception {
+        etcd = new InProcessEtcd();
+        Files.writeString(new File(temporaryFolder.getRoot(), ConfigurationReader.ETCD_CONFIG_FILE).toPath(),
+                "etcd-endpoint=127.0.0.1:" + etcd.getPort() + "\n");
+        final ExtensionInformation extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(temporaryFolder.getRoot());
+        etcdClient = new EtcdClient(new ConfigurationReader(extensionInformation));
+        etcdClient.createOrUpdate();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        etcdClient.close(0);
+        etcd.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void test_delete_objects_in_single_txn() {
+        save("node1", "a");
+        save("node2", "b");
+        final Map<String, KeyValue> read = read();
+
+        etcdClient.deleteObjects(modRevisions(read, "node1", "node2")).join();
+        assertEquals(0, etcd.getKeyCount());
+        assertEquals(1, etcd.getRequestCount("txn"));
+    }
+
+    @Test(timeout = 10_000)
+    public void test_rewritten_object_not_deleted() {
+        save("node1", "a");
+        final Map<String, KeyValue> read = read();
+
+        // the node wrote its entry again after it was read as expired
+        save("node1", "b");
+        etcdClient.deleteObjects(modRevisions(read, "node1")).join();
+        assertEquals("b", read().get(PREFIX + "node1").getValue().toStringUtf8());
+    }
+
+    @Test(timeout = 10_000)
+    public void test_failed_txn_falls_back_to_guarded_single_deletes() {
+        save("node1", "a");
+        save("node2", "b");
+        save("node3", "c");
+        final Map<String, KeyValue> read = read();
+
+        save("node2", "changed");
+        etcdClient.deleteObjects(modRevisions(read, "node1", "node2", "node3")).join();
+
+        // the whole txn failed on node2, the unchanged keys are deleted with a second txn
+        final Map<String, KeyValue> remaining = read();
+        assertEquals(1, remaining.size());
+        assertTrue(remaining.containsKey(PREFIX + "node2"));
+        assertEquals(2, etcd.getRequestCount("txn"));
+    }
+
+    @Test(timeout = 10_000)
+    public void test_many_objects_deleted_in_txns_within_ops_limit() {
+        final List<String> clusterIds = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            clusterIds.add("node" + i);
+            save("node" + i, "a");
+        }
+        final Map<String, KeyValue> read = read();
+
+        etcdClient.deleteObjects(modRevisions(read, clusterIds.toArray(new String[0]))).join();
+        assertEquals(0, etcd.getKeyCount());
+        assertEquals(3, etcd.getRequestCount("txn"));
+    }
+
+    private void save(final String clusterId, final String value) {
+        etcdClient.saveObject(PREFIX + clusterId, ByteString.copyFromUtf8(value)).join();
+    }
+
+    private Map<String, KeyValue> read() {
+        return etcdClient.getObjects(PREFIX).join().stream()
+                .collect(Collectors.toMap(keyValue -> keyValue.getKey().toStringUtf8(), Function.identity()));
+    }
+
+    private static Map<String, Long> modRevisions(final Map<String, KeyValue> read, final String... clusterIds) {
+        return List.of(clusterIds).stream()
+                .collect(Collectors.toMap(clusterId -> PREFIX + clusterId, clusterId -> read.get(PREFIX + clusterId).getModRevision()));
+    }
+}
@@ -0,0 +1,63 @@
+package com.hivemq.extensions;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class MembershipFileTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MembershipFile membershipFile;
+    private MembershipSnapshot membership;
+
+    @Before
+    public void setUp() {
+        membershipFile = new MembershipFile(temporaryFolder.getRoot());
+        membership = MembershipSnapshot.EMPTY.next(List.of(
+                new ClusterNodeEntry("node1", new ClusterNodeAddress("10.0.0.1", 7800)),
+                new ClusterNodeEntry("node2", new ClusterNodeAddress("10.0.0.2", 7801))));
+    }
+
+    @Test
+    public void test_missing_file() {
+        Assert.assertNull(membershipFile.read(60));
+    }
+
+    @Test
+    public void test_write_and_read() throws Exception {
+        membershipFile.write(membership);
+
+        final List<ClusterNodeEntry> entries = membershipFile.read(60);
+        Assert.assertNotNull(entries);
+        Assert.assertSame(membership, membership.next(entries));
+    }
+
+    @Test
+    public void test_too_old_file_ignored() throws Exception {
+        membershipFile.write(membership);
+        Thread.sleep(10);
+        Assert.assertNull(membershipFile.read(0));
+    }
+
+    @Test
+    public void test_corrupted_file_ignored() throws Exception {
+        membershipFile.write(membership);
+        final Path path = new File(temporaryFolder.getRoot(), MembershipFile.MEMBERSHIP_FILE).toPath();
+        final byte[] content = Files.readAllBytes(path);
+        content[content.length / 2] ^= 0x01;
+        Files.write(path, content);
+
+        Assert.assertNull(membershipFile.read(60));
+    }
+}
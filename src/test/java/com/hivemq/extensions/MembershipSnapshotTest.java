@@ -0,0 +1,50 @@
+package com.hivemq.extensions;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+public class MembershipSnapshotTest {
+
+    private final ClusterNodeEntry node1 = new ClusterNodeEntry("node1", new ClusterNodeAddress("10.0.0.1", 7800));
+    private final ClusterNodeEntry node2 = new ClusterNodeEntry("node2", new ClusterNodeAddress("10.0.0.2", 7800));
+
+    @Test
+    public void test_added_nodes() {
+        final MembershipSnapshot snapshot = MembershipSnapshot.EMPTY.next(List.of(node1, node2));
+        Assert.assertEquals(1, snapshot.getVersion());
+        Assert.assertEquals(Set.of("node1", "node2"), snapshot.getAdded());
+        Assert.assertEquals(2, snapshot.getAddresses().size());
+    }
+
+    @Test
+    public void test_unchanged_nodes_same_snapshot() {
+        final MembershipSnapshot snapshot = MembershipSnapshot.EMPTY.next(List.of(node1, node2));
+        final ClusterNodeEntry refreshedNode1 = new ClusterNodeEntry("node1", new ClusterNodeAddress("10.0.0.1", 7800));
+        Assert.assertSame(snapshot, snapshot.next(List.of(refreshedNode1, node2)));
+    }
+
+    @Test
+    public void test_removed_and_changed_nodes() {
+        final MembershipSnapshot snapshot = MembershipSnapshot.EMPTY.next(List.of(node1, node2));
+        final ClusterNodeEntry movedNode1 = new ClusterNodeEntry("node1", new ClusterNodeAddress("10.0.0.3", 7800));
+        final MembershipSnapshot nextSnapshot = snapshot.next(List.of(movedNode1));
+
+        Assert.assertEquals(2, nextSnapshot.getVersion());
+        Assert.assertEquals(Set.of("node2"), nextSnapshot.getRemoved());
+        Assert.assertEquals(Set.of("node1"), nextSnapshot.getChanged());
+        Assert.assertTrue(nextSnapshot.getAdded().isEmpty());
+        Assert.assertEquals("10.0.0.3", nextSnapshot.getAddresses().get(0).getHost());
+    }
+
+    @Test
+    public void test_unchanged_address_reused() {
+        final MembershipSnapshot snapshot = MembershipSnapshot.EMPTY.next(List.of(node1, node2));
+        final MembershipSnapshot nextSnapshot = snapshot.next(List.of(node1));
+        Assert.assertSame(snapshot.getAddressesByClusterId().get("node1"), nextSnapshot.getAddressesByClusterId().get("node1"));
+    }
+}
@@ -0,0 +1,166 @@
+package com.hivemq.extensions;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.ByteString;
+import com.hivemq.extensions.config.EtcdConfig;
+import com.hivemq.extensions.etcd.InProcessEtcd;
+import com.ibm.etcd.api.KeyValue;
+import com.ibm.etcd.client.EtcdClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PrefixReaderTest {
+
+    private static final ByteString PREFIX = ByteString.copyFromUtf8("/hivemq/discovery/");
+
+    private InProcessEtcd etcd;
+    private EtcdClient client;
+    private PrefixReader prefixReader;
+
+    @Before
+    public void setUp() throws Exception {
+        etcd = new InProcessEtcd();
+        client = EtcdClient.forEndpoints("127.0.0.1:" + etcd.getPort()).withPlainText().build();
+        prefixReader = new PrefixReader(client.getKvClient(), new RequestExecutor(new DiscoveryMetrics()), new DiscoveryMetrics());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        etcd.close();
+    }
+
+    @Test
+    public void test_prefix_end() {
+        Assert.assertEquals(ByteString.copyFromUtf8("/hivemq/discovery0"), PrefixReader.prefixEnd(ByteString.copyFromUtf8("/hivemq/discovery/")));
+    }
+
+    @Test
+    public void test_prefix_end_trailing_max_bytes() {
+        final ByteString prefix = ByteString.copyFrom(new byte[]{'a', (byte) 0xff, (byte) 0xff});
+        Assert.assertEquals(ByteString.copyFromUtf8("b"), PrefixReader.prefixEnd(prefix));
+    }
+
+    @Test
+    public void test_prefix_end_only_max_bytes() {
+        final ByteString prefix = ByteString.copyFrom(new byte[]{(byte) 0xff});
+        Assert.assertEquals(ByteString.copyFrom(new byte[]{0}), PrefixReader.prefixEnd(prefix));
+    }
+
+    @Test(timeout = 10_000)
+    public void test_probe_unchanged_entries_keys_only_read() {
+        final EtcdConfig etcdConfig = etcdConfig(true, false);
+        put("node1", "a");
+        put("node2", "b");
+        Assert.assertEquals(2, read(etcdConfig).size());
+
+        // only the keys and mod revisions are returned, the values are known from the last read
+        final List<KeyValue> keyValues = read(etcdConfig);
+        Assert.assertEquals(2, keyValues.size());
+        Assert.assertTrue(keyValues.get(0).getValue().isEmpty());
+        Assert.assertEquals(2, etcd.getRequestCount("range"));
+        Assert.assertEquals(1, etcd.getRequestCount("rangeKeysOnly"));
+    }
+
+    @Test(timeout = 10_000)
+    public void test_probe_changed_mod_revision_full_read() {
+        final EtcdConfig etcdConfig = etcdConfig(true, false);
+        put("node1", "a");
+        put("node2", "b");
+        read(etcdConfig);
+
+        put("node1", "c");
+        final List<KeyValue> keyValues = read(etcdConfig);
+        Assert.assertEquals(ByteString.copyFromUtf8("c"), keyValues.get(0).getValue());
+        Assert.assertEquals(3, etcd.getRequestCount("range"));
+        Assert.assertEquals(1, etcd.getRequestCount("rangeKeysOnly"));
+    }
+
+    @Test(timeout = 10_000)
+    public void test_invalidated_read_full_read() {
+        final EtcdConfig etcdConfig = etcdConfig(true, false);
+        put("node1", "a");
+        read(etcdConfig);
+
+        prefixReader.invalidate();
+        Assert.assertEquals(ByteString.copyFromUtf8("a"), read(etcdConfig).get(0).getValue());
+        Assert.assertEquals(2, etcd.getRequestCount("range"));
+        Assert.assertEquals(0, etcd.getRequestCount("rangeKeysOnly"));
+    }
+
+    @Test(timeout = 10_000)
+    public void test_serializable_reads_without_probe() {
+        final EtcdConfig etcdConfig = etcdConfig(false, true);
+        put("node1", "a");
+
+        // the first read goes through the leader, later ones within the staleness bound are serializable
+        read(etcdConfig);
+        Assert.assertEquals(0, etcd.getRequestCount("rangeSerializable"));
+        Assert.assertEquals(1, read(etcdConfig).size());
+        Assert.assertEquals(1, etcd.getRequestCount("rangeSerializable"));
+        Assert.assertEquals(0, etcd.getRequestCount("rangeKeysOnly"));
+    }
+
+    @Test(timeout = 10_000)
+    public void test_pages_read_at_revision_of_first_page() {
+        put("node1", "a");
+        put("node2", "b");
+        put("node3", "c");
+
+        // entries change after the first of three pages was read, the later pages don't see it
+        final AtomicInteger pages = new AtomicInteger();
+        final RequestExecutor requestExecutor = new RequestExecutor(new DiscoveryMetrics()) {
+            @Override
+            public <T> CompletableFuture<T> execute(final String operation, final RequestLimiter.Priority priority,
+                                                    final Supplier<ListenableFuture<T>> request) {
+                if (pages.incrementAndGet() == 2) {
+                    etcd.put(key("node2"), ByteString.copyFromUtf8("changed"));
+                    etcd.delete(key("node3"));
+                    etcd.put(key("node4"), ByteString.copyFromUtf8("d"));
+                }
+                return super.execute(operation, priority, request);
+            }
+        };
+        final PrefixReader pagedReader = new PrefixReader(client.getKvClient(), requestExecutor, new DiscoveryMetrics());
+
+        final List<KeyValue> keyValues = new ArrayList<>();
+        pagedReader.readPages(PREFIX, PrefixReader.prefixEnd(PREFIX), 0, 1, false, false, keyValues::add).join();
+        Assert.assertEquals(List.of("a", "b", "c"),
+                keyValues.stream().map(keyValue -> keyValue.getValue().toStringUtf8()).collect(Collectors.toList()));
+        Assert.assertEquals(3, pages.get());
+    }
+
+    private List<KeyValue> read(final EtcdConfig etcdConfig) {
+        final List<KeyValue> keyValues = new ArrayList<>();
+        prefixReader.read(PREFIX, etcdConfig, keyValues::add).join();
+        return keyValues;
+    }
+
+    private static ByteString key(final String clusterId) {
+        return PREFIX.concat(ByteString.copyFromUtf8(clusterId));
+    }
+
+    private void put(final String clusterId, final String value) {
+        client.getKvClient().put(key(clusterId), ByteString.copyFromUtf8(value)).sync();
+    }
+
+    private static EtcdConfig etcdConfig(final boolean readProbe, final boolean serializableReads) {
+        final EtcdConfig etcdConfig = mock(EtcdConfig.class);
+        when(etcdConfig.getReadProbe()).thenReturn(readProbe);
+        when(etcdConfig.getSerializableReads()).thenReturn(serializableReads);
+        when(etcdConfig.getReadMaxStalenessInSeconds()).thenReturn(60L);
+        return etcdConfig;
+    }
+}
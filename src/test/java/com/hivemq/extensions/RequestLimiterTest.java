@@ -0,0 +1,119 @@
+package com.hivemq.extensions;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final RequestLimiter requestLimiter = new RequestLimiter(clock::get);
+
+    @Test
+    public void test_unlimited_without_configuration() {
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(requestLimiter.acquire(RequestLimiter.Priority.CLEANUP).isDone());
+        }
+        assertEquals(1_000, requestLimiter.getInFlight());
+    }
+
+    @Test
+    public void test_waits_for_in_flight_slot() {
+        requestLimiter.configure(0, 1, 2);
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.READ).isDone());
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.READ).isDone());
+
+        final CompletableFuture<Void> waiting = requestLimiter.acquire(RequestLimiter.Priority.READ);
+        assertFalse(waiting.isDone());
+        requestLimiter.release();
+        assertTrue(waiting.isDone());
+        assertEquals(2, requestLimiter.getInFlight());
+    }
+
+    @Test
+    public void test_registration_before_reads() {
+        requestLimiter.configure(0, 1, 1);
+        requestLimiter.acquire(RequestLimiter.Priority.READ);
+        final CompletableFuture<Void> read = requestLimiter.acquire(RequestLimiter.Priority.READ);
+        final CompletableFuture<Void> registration = requestLimiter.acquire(RequestLimiter.Priority.REGISTRATION);
+
+        requestLimiter.release();
+        assertTrue(registration.isDone());
+        assertFalse(read.isDone());
+        requestLimiter.release();
+        assertTrue(read.isDone());
+    }
+
+    @Test
+    public void test_cleanup_shed_first() {
+        requestLimiter.configure(0, 1, 4);
+        requestLimiter.acquire(RequestLimiter.Priority.READ);
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.CLEANUP).isDone());
+        // half of the in-flight requests are kept for registrations and reads
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.CLEANUP).isCompletedExceptionally());
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.READ).isDone());
+    }
+
+    @Test
+    public void test_token_bucket_refills_with_rate() {
+        requestLimiter.configure(10, 2, 0);
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.REGISTRATION).isDone());
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.REGISTRATION).isDone());
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.CLEANUP).isCompletedExceptionally());
+
+        final CompletableFuture<Void> waiting = requestLimiter.acquire(RequestLimiter.Priority.READ);
+        assertFalse(waiting.isDone());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        requestLimiter.release();
+        assertTrue(waiting.isDone());
+    }
+
+    @Test(timeout = 10_000)
+    public void test_waiter_blocked_on_tokens_after_release_admitted_after_refill() throws Exception {
+        requestLimiter.configure(10, 2, 1);
+        requestLimiter.acquire(RequestLimiter.Priority.READ);
+        // both wait for the in-flight slot while a token is left
+        final CompletableFuture<Void> first = requestLimiter.acquire(RequestLimiter.Priority.READ);
+        final CompletableFuture<Void> second = requestLimiter.acquire(RequestLimiter.Priority.READ);
+
+        requestLimiter.release();
+        assertTrue(first.isDone());
+        // the slot is free again but the bucket is empty
+        requestLimiter.release();
+        assertFalse(second.isDone());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(1, requestLimiter.getInFlight());
+    }
+
+    @Test
+    public void test_given_up_waiter_does_not_block_new_requests() {
+        requestLimiter.configure(10, 1, 0);
+        requestLimiter.acquire(RequestLimiter.Priority.READ);
+        final CompletableFuture<Void> waiting = requestLimiter.acquire(RequestLimiter.Priority.READ);
+        waiting.completeExceptionally(new RuntimeException("timeout"));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(requestLimiter.acquire(RequestLimiter.Priority.READ).isDone());
+        assertEquals(0, requestLimiter.getWaiting());
+    }
+
+    @Test
+    public void test_given_up_waiter_dropped() {
+        requestLimiter.configure(0, 1, 1);
+        requestLimiter.acquire(RequestLimiter.Priority.READ);
+        final CompletableFuture<Void> waiting = requestLimiter.acquire(RequestLimiter.Priority.READ);
+        waiting.completeExceptionally(new RuntimeException("timeout"));
+
+        requestLimiter.release();
+        assertEquals(0, requestLimiter.getInFlight());
+        assertEquals(0, requestLimiter.getWaiting());
+    }
+}
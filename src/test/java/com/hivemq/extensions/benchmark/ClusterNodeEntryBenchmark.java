@@ -0,0 +1,53 @@
+package com.hivemq.extensions.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.codec.ClusterNodeEntryCodec;
+import com.hivemq.extensions.codec.ClusterNodeEntryCodecs;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterNodeEntryBenchmark {
+
+    @Param({ClusterNodeEntryCodecs.JSON, ClusterNodeEntryCodecs.BINARY})
+    public String format;
+
+    private ClusterNodeEntry clusterNodeEntry;
+    private ClusterNodeEntryCodec codec;
+    private ByteString encoded;
+
+    @Setup
+    public void setUp() {
+        clusterNodeEntry = new ClusterNodeEntry("x3Fk9", new ClusterNodeAddress("10.12.34.56", 7800));
+        codec = ClusterNodeEntryCodecs.forFormat(format);
+        encoded = codec.encode(clusterNodeEntry);
+    }
+
+    @Benchmark
+    public ByteString encode() {
+        return codec.encode(clusterNodeEntry);
+    }
+
+    @Benchmark
+    public ClusterNodeEntry decode() {
+        return ClusterNodeEntryCodecs.decode(encoded);
+    }
+}
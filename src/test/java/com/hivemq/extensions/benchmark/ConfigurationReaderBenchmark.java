@@ -0,0 +1,67 @@
+package com.hivemq.extensions.benchmark;
+
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extensions.config.ConfigurationReader;
+import com.hivemq.extensions.config.EtcdConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationReaderBenchmark {
+
+    private File extensionHomeFolder;
+    private File propertiesFile;
+    private ConfigurationReader configurationReader;
+    private long lastModified;
+
+    @Setup
+    public void setUp() throws Exception {
+        extensionHomeFolder = Files.createTempDirectory("etcd-discovery-benchmark").toFile();
+        propertiesFile = new File(extensionHomeFolder, ConfigurationReader.ETCD_CONFIG_FILE);
+        Files.writeString(propertiesFile.toPath(), "etcd-endpoint=localhost\n");
+        lastModified = propertiesFile.lastModified();
+
+        final ExtensionInformation extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(extensionHomeFolder);
+        configurationReader = new ConfigurationReader(extensionInformation);
+    }
+
+    @TearDown
+    public void tearDown() {
+        propertiesFile.delete();
+        extensionHomeFolder.delete();
+    }
+
+    @Benchmark
+    public EtcdConfig readUnchanged() {
+        return configurationReader.readConfiguration();
+    }
+
+    @Benchmark
+    public EtcdConfig readChanged() {
+        // a new modification time forces the file to be parsed again
+        propertiesFile.setLastModified(++lastModified);
+        return configurationReader.readConfiguration();
+    }
+}
@@ -0,0 +1,114 @@
+package com.hivemq.extensions.benchmark;
+
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.callbacks.EtcdDiscoveryCallback;
+import com.hivemq.extensions.codec.ClusterNodeEntryCodecs;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import com.hivemq.extensions.config.ConfigurationReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures a full reload cycle (reading, decoding and filtering all entries and building the addresses)
+ * against an in-memory etcd with the given number of entries. Unchanged entries are taken from the decoded entry
+ * cache, {@link #reloadChangedEntries} gives every entry a new mod revision before each reload so all are decoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscoveryCallbackBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int entries;
+
+    @Param({ClusterNodeEntryCodecs.JSON, ClusterNodeEntryCodecs.BINARY})
+    public String format;
+
+    private FakeEtcdClient etcdClient;
+    private File extensionHomeFolder;
+    private File propertiesFile;
+    private EtcdDiscoveryCallback callback;
+    private ClusterDiscoveryInput input;
+    private ClusterDiscoveryOutput output;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @Setup
+    public void setUp() throws Exception {
+        extensionHomeFolder = Files.createTempDirectory("etcd-discovery-benchmark").toFile();
+        propertiesFile = new File(extensionHomeFolder, ConfigurationReader.ETCD_CONFIG_FILE);
+        Files.writeString(propertiesFile.toPath(), "etcd-endpoint=localhost\nentry-format=" + format + "\n");
+
+        final ExtensionInformation extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(extensionHomeFolder);
+        etcdClient = new FakeEtcdClient(new ConfigurationReader(extensionInformation));
+        etcdClient.createOrUpdate();
+
+        final String key = etcdClient.getEtcdConfig().getKey();
+        for (int i = 0; i < entries; i++) {
+            final ClusterNodeEntry entry = new ClusterNodeEntry("node" + i, new ClusterNodeAddress("10.0." + (i / 256) + "." + (i % 256), 7800));
+            etcdClient.put(key + entry.getClusterId(), ClusterNodeEntryCodecs.forFormat(format).encode(entry));
+        }
+
+        // stub only mocks do not record the invocations of every benchmark iteration
+        input = mock(ClusterDiscoveryInput.class, withSettings().stubOnly());
+        when(input.getOwnClusterId()).thenReturn("node0");
+        when(input.getOwnAddress()).thenReturn(new ClusterNodeAddress("10.0.0.0", 7800));
+        output = mock(ClusterDiscoveryOutput.class, withSettings().stubOnly());
+
+        callback = new EtcdDiscoveryCallback(etcdClient, () -> executor);
+        callback.init(input, output);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        propertiesFile.delete();
+        extensionHomeFolder.delete();
+    }
+
+    @Benchmark
+    public void reload() {
+        callback.reload(input, output);
+    }
+
+    @Benchmark
+    public void reloadChangedEntries(final ChangedEntries changedEntries) {
+        callback.reload(input, output);
+    }
+
+    @State(Scope.Thread)
+    public static class ChangedEntries {
+
+        @Setup(Level.Invocation)
+        public void rewriteEntries(final DiscoveryCallbackBenchmark benchmark) {
+            benchmark.etcdClient.rewriteAll();
+        }
+    }
+}
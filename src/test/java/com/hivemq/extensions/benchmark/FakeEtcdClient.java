@@ -0,0 +1,118 @@
+package com.hivemq.extensions.benchmark;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extensions.EtcdClient;
+import com.hivemq.extensions.config.ConfigurationReader;
+import com.hivemq.extensions.config.EtcdConfig;
+import com.ibm.etcd.api.KeyValue;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-memory {@link EtcdClient} without a connection, so benchmarks measure only the work done by the extension.
+ */
+public class FakeEtcdClient extends EtcdClient {
+
+    private final ConfigurationReader configurationReader;
+    private final ConcurrentSkipListMap<String, KeyValue> store = new ConcurrentSkipListMap<>();
+    private final AtomicLong revision = new AtomicLong();
+    private EtcdConfig etcdConfig;
+
+    public FakeEtcdClient(final ConfigurationReader configurationReader) {
+        super(configurationReader);
+        this.configurationReader = configurationReader;
+    }
+
+    @Override
+    public boolean createOrUpdate() {
+        final EtcdConfig newEtcdConfig = configurationReader.readConfiguration();
+        if (newEtcdConfig == null) {
+            throw new IllegalStateException("Configuration of the Etcd discovery extension couldn't be loaded.");
+        }
+        final boolean connectionBuilt = etcdConfig == null;
+        etcdConfig = newEtcdConfig;
+        return connectionBuilt;
+    }
+
+    @Override
+    public EtcdConfig getEtcdConfig() {
+        return etcdConfig;
+    }
+
+    @Override
+    public CompletableFuture<Long> getOrCreateLease() {
+        return CompletableFuture.completedFuture(1L);
+    }
+
+    @Override
+    public long getLeaseId() {
+        return 1L;
+    }
+
+    @Override
+    public CompletableFuture<Void> revokeLease() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> retirePreviousConnection() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> acquireJanitor(final String ownClusterId) {
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveObject(final String objectKey, final ByteString content) {
+        put(objectKey, content);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveObject(final String objectKey, final ByteString content, final long leaseId) {
+        put(objectKey, content);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteObject(final String objectKey) {
+        store.remove(objectKey);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteObjects(final Map<String, Long> objectKeysWithModRevision) {
+        objectKeysWithModRevision.forEach((objectKey, modRevision) -> store.computeIfPresent(objectKey,
+                (key, keyValue) -> keyValue.getModRevision() == modRevision ? null : keyValue));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> getObjects(final String objectKey, final Consumer<KeyValue> consumer) {
+        store.subMap(objectKey, objectKey + Character.MAX_VALUE).values().forEach(consumer);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    public void put(final String objectKey, final ByteString content) {
+        final long modRevision = revision.incrementAndGet();
+        store.put(objectKey, KeyValue.newBuilder()
+                .setKey(ByteString.copyFromUtf8(objectKey))
+                .setValue(content)
+                .setModRevision(modRevision)
+                .setCreateRevision(modRevision)
+                .build());
+    }
+
+    /**
+     * Writes every entry again with the same value, which gives it a new mod revision.
+     */
+    public void rewriteAll() {
+        store.replaceAll((objectKey, keyValue) -> keyValue.toBuilder().setModRevision(revision.incrementAndGet()).build());
+    }
+}
@@ -0,0 +1,465 @@
+package com.hivemq.extensions.callbacks;
+
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.EtcdClient;
+import com.hivemq.extensions.codec.ClusterNodeEntryCodecs;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import com.hivemq.extensions.config.ConfigurationReader;
+import com.hivemq.extensions.config.DiscoveryKeys;
+import com.hivemq.extensions.etcd.InProcessEtcd;
+import com.ibm.etcd.api.KeyValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EtcdDiscoveryCallbackTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private InProcessEtcd etcd;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        etcd = new InProcessEtcd();
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        etcd.close();
+    }
+
+    @Test(timeout = 30_000)
+    public void test_nodes_discover_each_other() throws Exception {
+        writeConfiguration("");
+        assertNodesDiscoverEachOther();
+    }
+
+    @Test(timeout = 30_000)
+    public void test_nodes_discover_each_other_with_lease_and_watch() throws Exception {
+        writeConfiguration("use-lease=true\nuse-watch=true\n");
+        assertNodesDiscoverEachOther();
+    }
+
+    @Test(timeout = 30_000)
+    public void test_destroy_removes_own_entry() throws Exception {
+        writeConfiguration("");
+        final EtcdDiscoveryCallback callback = callback();
+        final ClusterDiscoveryInput input = input("node1", 7801);
+        callback.init(input, mock(ClusterDiscoveryOutput.class));
+        assertEquals(1, etcd.getKeyCount());
+
+        callback.destroy(input);
+        assertEquals(0, etcd.getKeyCount());
+    }
+
+    @Test(timeout = 30_000)
+    public void test_destroy_revokes_lease() throws Exception {
+        writeConfiguration("use-lease=true\nuse-janitor-election=true\n");
+        final EtcdDiscoveryCallback callback = callback();
+        final ClusterDiscoveryInput input = input("node1", 7801);
+        callback.init(input, mock(ClusterDiscoveryOutput.class));
+
+        callback.destroy(input);
+        assertEquals(1, etcd.getRequestCount("leaseRevoke"));
+        assertEquals(0, etcd.getKeyCount());
+    }
+
+    @Test(timeout = 30_000)
+    public void test_deleted_own_entry_written_again_with_lease() throws Exception {
+        writeConfiguration("use-lease=true\nupdate-interval=1\n");
+        final EtcdDiscoveryCallback callback = callback();
+        final ClusterDiscoveryInput input = input("node1", 7801);
+        callback.init(input, mock(ClusterDiscoveryOutput.class));
+
+        final EtcdClient otherClient = new EtcdClient(configurationReader(temporaryFolder.getRoot()));
+        otherClient.createOrUpdate();
+        otherClient.deleteObject(DiscoveryKeys.getEntryKey(otherClient.getEtcdConfig(), "node1")).join();
+        otherClient.close(0);
+        assertEquals(0, etcd.getKeyCount());
+
+        // the next heartbeat finds the entry missing even though the lease is still alive
+        for (int i = 0; i < 60 && etcd.getKeyCount() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, etcd.getKeyCount());
+        callback.close();
+    }
+
+    @Test(timeout = 30_000)
+    public void test_entries_without_cached_value_read_again() throws Exception {
+        writeConfiguration("");
+        final EtcdClient otherClient = new EtcdClient(configurationReader(temporaryFolder.getRoot()));
+        otherClient.createOrUpdate();
+        otherClient.saveObject(DiscoveryKeys.getEntryKey(otherClient.getEtcdConfig(), "node2"), ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY)
+                .encode(new ClusterNodeEntry("node2", "127.0.0.1", 7802, System.currentTimeMillis()))).join();
+        otherClient.close(0);
+
+        // the first read matches the probe of a concurrent read whose values are not cached yet
+        final AtomicInteger reads = new AtomicInteger();
+        final EtcdClient etcdClient = new EtcdClient(configurationReader(temporaryFolder.getRoot())) {
+            @Override
+            public CompletableFuture<Void> getObjects(final String objectKey, final Consumer<KeyValue> consumer) {
+                if (reads.incrementAndGet() == 1) {
+                    return super.getObjects(objectKey, keyValue -> consumer.accept(keyValue.toBuilder().clearValue().build()));
+                }
+                return super.getObjects(objectKey, consumer);
+            }
+        };
+        final EtcdDiscoveryCallback callback = new EtcdDiscoveryCallback(etcdClient, () -> executor);
+        final ClusterDiscoveryOutput output = mock(ClusterDiscoveryOutput.class);
+        callback.init(input("node1", 7801), output);
+
+        assertTrue(ports(lastProvidedNodes(output)).contains(7802));
+        assertTrue(reads.get() >= 2);
+        callback.close();
+    }
+
+    @Test(timeout = 30_000)
+    public void test_own_entry_kept_when_connection_replaced() throws Exception {
+        writeConfiguration("use-lease=true\n");
+        final EtcdDiscoveryCallback callback = callback();
+        final ClusterDiscoveryInput input = input("node1", 7801);
+        callback.init(input, mock(ClusterDiscoveryOutput.class));
+
+        writeConfiguration("use-lease=true\nchannel-threads=1\n");
+        callback.reload(input, mock(ClusterDiscoveryOutput.class));
+        assertEquals(1, etcd.getKeyCount());
+
+        // the lease of the old connection is revoked once the entry was written with the new one
+        for (int i = 0; i < 100 && etcd.getRequestCount("leaseRevoke") == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, etcd.getRequestCount("leaseRevoke"));
+        assertEquals(1, etcd.getKeyCount());
+        callback.close();
+    }
+
+    @Test(timeout = 30_000)
+    public void test_destroy_bounded_by_shutdown_timeout() throws Exception {
+        writeConfiguration("shutdown-timeout=500\n");
+        final EtcdDiscoveryCallback callback = callback();
+        final ClusterDiscoveryInput input = input("node1", 7801);
+        callback.init(input, mock(ClusterDiscoveryOutput.class));
+
+        etcd.setLatencyMillis(10_000);
+        final long startNanos = System.nanoTime();
+        callback.destroy(input);
+        callback.close();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < 3_000);
+    }
+
+    @Test(timeout = 60_000)
+    public void test_no_threads_leak_across_restarts() throws Exception {
+        writeConfiguration("use-lease=true\nuse-watch=true\n");
+        startAndStop();
+        // the threads shared by all connections, e.g. of the retry delays, exist from now on
+        final int threads = Thread.activeCount();
+
+        for (int i = 0; i < 5; i++) {
+            startAndStop();
+        }
+        assertTrue(awaitThreadCount(threads) <= threads);
+    }
+
+    @Test(timeout = 30_000)
+    public void test_reload_does_not_write_own_entry() throws Exception {
+        writeConfiguration("");
+        final EtcdDiscoveryCallback callback = callback();
+        final ClusterDiscoveryInput input = input("node1", 7801);
+        final ClusterDiscoveryOutput output = mock(ClusterDiscoveryOutput.class);
+        callback.init(input, output);
+        final long puts = etcd.getRequestCount("put");
+
+        for (int i = 0; i < 5; i++) {
+            callback.reload(input, output);
+        }
+        assertEquals(puts, etcd.getRequestCount("put"));
+    }
+
+    @Test(timeout = 30_000)
+    public void test_heartbeat_refreshes_own_entry() throws Exception {
+        writeConfiguration("expiration=3\nupdate-interval=1\n");
+        final EtcdDiscoveryCallback callback = callback();
+        callback.init(input("node1", 7801), mock(ClusterDiscoveryOutput.class));
+        final long puts = etcd.getRequestCount("put");
+
+        while (etcd.getRequestCount("put") < puts + 2) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void test_last_known_nodes_kept_while_etcd_unavailable() throws Exception {
+        writeConfiguration("max-retries=0\ncircuit-breaker-threshold=1\n");
+        final EtcdDiscoveryCallback callback1 = callback();
+        final EtcdDiscoveryCallback callback2 = callback();
+        final ClusterDiscoveryInput input1 = input("node1", 7801);
+        final ClusterDiscoveryOutput output1 = mock(ClusterDiscoveryOutput.class);
+        callback2.init(input("node2", 7802), mock(ClusterDiscoveryOutput.class));
+        callback1.init(input1, output1);
+        assertEquals(2, reloadUntilDiscovered(callback1, input1, output1, 2));
+
+        etcd.setAvailable(false);
+        callback1.reload(input1, output1);
+        assertEquals(2, lastProvidedNodes(output1).size());
+        // the circuit breaker is open now, the reload does not reach etcd
+        final long ranges = etcd.getRequestCount("range");
+        callback1.reload(input1, output1);
+        assertEquals(ranges, etcd.getRequestCount("range"));
+        assertEquals(2, lastProvidedNodes(output1).size());
+    }
+
+    @Test(timeout = 30_000)
+    public void test_persisted_nodes_provided_at_init() throws Exception {
+        writeConfiguration("persist-membership=true\n");
+        final EtcdDiscoveryCallback callback1 = callback();
+        final ClusterDiscoveryInput input1 = input("node1", 7801);
+        final ClusterDiscoveryOutput output1 = mock(ClusterDiscoveryOutput.class);
+        callback().init(input("node2", 7802), mock(ClusterDiscoveryOutput.class));
+        callback1.init(input1, output1);
+        assertEquals(2, reloadUntilDiscovered(callback1, input1, output1, 2));
+
+        // a restarted node gets the nodes of the file even though etcd is not available
+        etcd.setAvailable(false);
+        final ClusterDiscoveryOutput restartedOutput = mock(ClusterDiscoveryOutput.class);
+        callback().init(input1, restartedOutput);
+        assertEquals(2, lastProvidedNodes(restartedOutput).size());
+    }
+
+    @Test(timeout = 30_000)
+    public void test_warm_up_connects_before_init() throws Exception {
+        writeConfiguration("use-lease=true\n");
+        final EtcdDiscoveryCallback callback = callback();
+        callback.warmUp().get();
+        assertEquals(1, etcd.getRequestCount("range"));
+        assertEquals(1, etcd.getRequestCount("leaseGrant"));
+
+        callback.init(input("node1", 7801), mock(ClusterDiscoveryOutput.class));
+        assertEquals(1, etcd.getRequestCount("leaseGrant"));
+    }
+
+    @Test(timeout = 30_000)
+    public void test_clusters_sharing_key_separated_and_same_zone_first() throws Exception {
+        final File zoneAFolder = temporaryFolder.newFolder("zone-a");
+        final File zoneBFolder = temporaryFolder.newFolder("zone-b");
+        final File otherClusterFolder = temporaryFolder.newFolder("other-cluster");
+        writeConfiguration(zoneAFolder, "cluster-name=cluster1\nzone=zone-a\n");
+        writeConfiguration(zoneBFolder, "cluster-name=cluster1\nzone=zone-b\nprefer-same-zone=true\n");
+        writeConfiguration(otherClusterFolder, "cluster-name=cluster2\n");
+
+        callback(otherClusterFolder).init(input("node2", 7802), mock(ClusterDiscoveryOutput.class));
+        callback(zoneAFolder).init(input("node3", 7803), mock(ClusterDiscoveryOutput.class));
+        final EtcdDiscoveryCallback callback1 = callback(zoneBFolder);
+        final ClusterDiscoveryInput input1 = input("node1", 7801);
+        final ClusterDiscoveryOutput output1 = mock(ClusterDiscoveryOutput.class);
+        callback1.init(input1, output1);
+
+        // node2 belongs to another cluster, node3 is read first but in another zone
+        assertEquals(2, reloadUntilDiscovered(callback1, input1, output1, 2));
+        assertEquals(7801, lastProvidedNodes(output1).get(0).getPort());
+    }
+
+    @Test(timeout = 30_000)
+    public void test_unnamed_and_named_cluster_isolated() throws Exception {
+        final File unnamedFolder = temporaryFolder.newFolder("unnamed");
+        final File namedFolder = temporaryFolder.newFolder("named");
+        writeConfiguration(unnamedFolder, "");
+        writeConfiguration(namedFolder, "cluster-name=cluster1\n");
+
+        // an expired entry of the named cluster, only its own nodes may delete it
+        final EtcdClient namedClient = new EtcdClient(configurationReader(namedFolder));
+        namedClient.createOrUpdate();
+        final ClusterNodeEntry expiredEntry = new ClusterNodeEntry("node3", "127.0.0.1", 7803, 0, "cluster1", null, null);
+        final String expiredKey = DiscoveryKeys.getEntryKey(namedClient.getEtcdConfig(), "node3");
+        namedClient.saveObject(expiredKey, ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(expiredEntry)).join();
+        namedClient.close(0);
+
+        final EtcdDiscoveryCallback unnamedCallback = callback(unnamedFolder);
+        final ClusterDiscoveryInput unnamedInput = input("node1", 7801);
+        final ClusterDiscoveryOutput unnamedOutput = mock(ClusterDiscoveryOutput.class);
+        unnamedCallback.init(unnamedInput, unnamedOutput);
+        unnamedCallback.reload(unnamedInput, unnamedOutput);
+        assertEquals(List.of(7801), ports(lastProvidedNodes(unnamedOutput)));
+        assertEquals(2, etcd.getKeyCount());
+
+        final EtcdDiscoveryCallback namedCallback = callback(namedFolder);
+        final ClusterDiscoveryInput namedInput = input("node2", 7802);
+        final ClusterDiscoveryOutput namedOutput = mock(ClusterDiscoveryOutput.class);
+        namedCallback.init(namedInput, namedOutput);
+        assertEquals(List.of(7802), ports(lastProvidedNodes(namedOutput)));
+
+        unnamedCallback.reload(unnamedInput, unnamedOutput);
+        assertEquals(List.of(7801), ports(lastProvidedNodes(unnamedOutput)));
+    }
+
+    @Test(timeout = 30_000)
+    public void test_single_janitor_until_its_lease_is_revoked() throws Exception {
+        writeConfiguration("use-janitor-election=true\n");
+        final EtcdDiscoveryCallback callback1 = callback();
+        final EtcdDiscoveryCallback callback2 = callback();
+        final ClusterDiscoveryInput input1 = input("node1", 7801);
+        final ClusterDiscoveryInput input2 = input("node2", 7802);
+        final ClusterDiscoveryOutput output1 = mock(ClusterDiscoveryOutput.class);
+        final ClusterDiscoveryOutput output2 = mock(ClusterDiscoveryOutput.class);
+        callback1.init(input1, output1);
+        callback2.init(input2, output2);
+        final EtcdClient otherClient = new EtcdClient(configurationReader(temporaryFolder.getRoot()));
+        otherClient.createOrUpdate();
+
+        // node1 reads an expired entry first and is elected
+        final String expiredKey1 = saveExpiredEntry(otherClient, "node3");
+        callback1.reload(input1, output1);
+        awaitDeleted(otherClient, expiredKey1);
+
+        // node2 loses the election and keeps the expired entry
+        final String expiredKey2 = saveExpiredEntry(otherClient, "node4");
+        final long txns = etcd.getRequestCount("txn");
+        callback2.reload(input2, output2);
+        for (int i = 0; i < 100 && etcd.getRequestCount("txn") == txns; i++) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(200);
+        assertTrue(otherClient.existsObject(expiredKey2).join());
+
+        // the revoked lease removes the janitor key, so node2 takes over
+        callback1.destroy(input1);
+        callback2.reload(input2, output2);
+        awaitDeleted(otherClient, expiredKey2);
+
+        otherClient.close(0);
+        callback1.close();
+        callback2.close();
+    }
+
+    private static String saveExpiredEntry(final EtcdClient etcdClient, final String clusterId) {
+        final ClusterNodeEntry expiredEntry = new ClusterNodeEntry(clusterId, "127.0.0.1", 7800, 0);
+        final String expiredKey = DiscoveryKeys.getEntryKey(etcdClient.getEtcdConfig(), clusterId);
+        etcdClient.saveObject(expiredKey, ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(expiredEntry)).join();
+        return expiredKey;
+    }
+
+    private static void awaitDeleted(final EtcdClient etcdClient, final String objectKey) throws InterruptedException {
+        for (int i = 0; i < 100 && etcdClient.existsObject(objectKey).join(); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(etcdClient.existsObject(objectKey).join());
+    }
+
+    private static List<Integer> ports(final List<ClusterNodeAddress> addresses) {
+        return addresses.stream().map(ClusterNodeAddress::getPort).collect(Collectors.toList());
+    }
+
+    private void assertNodesDiscoverEachOther() throws Exception {
+        final EtcdDiscoveryCallback callback1 = callback();
+        final EtcdDiscoveryCallback callback2 = callback();
+        final ClusterDiscoveryInput input1 = input("node1", 7801);
+        final ClusterDiscoveryInput input2 = input("node2", 7802);
+        final ClusterDiscoveryOutput output1 = mock(ClusterDiscoveryOutput.class);
+        final ClusterDiscoveryOutput output2 = mock(ClusterDiscoveryOutput.class);
+
+        callback1.init(input1, output1);
+        callback2.init(input2, output2);
+
+        // the own entry is written while the other entries are read, so it might only be seen after a reload
+        assertEquals(2, reloadUntilDiscovered(callback1, input1, output1, 2));
+        assertEquals(2, reloadUntilDiscovered(callback2, input2, output2, 2));
+    }
+
+    private static int reloadUntilDiscovered(final EtcdDiscoveryCallback callback, final ClusterDiscoveryInput input,
+                                             final ClusterDiscoveryOutput output, final int expectedNodes) throws Exception {
+        for (int i = 0; i < 100 && lastProvidedNodes(output).size() != expectedNodes; i++) {
+            Thread.sleep(50);
+            callback.reload(input, output);
+        }
+        return lastProvidedNodes(output).size();
+    }
+
+    private void startAndStop() throws Exception {
+        final EtcdDiscoveryCallback callback = callback();
+        final ClusterDiscoveryInput input = input("node1", 7801);
+        callback.warmUp().join();
+        callback.init(input, mock(ClusterDiscoveryOutput.class));
+        callback.reload(input, mock(ClusterDiscoveryOutput.class));
+        callback.destroy(input);
+        callback.close();
+    }
+
+    /**
+     * Threads of a closed connection terminate in the background, waits until at most the expected number is left.
+     */
+    private static int awaitThreadCount(final int expectedThreads) throws InterruptedException {
+        final long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        int threads = Thread.activeCount();
+        while (threads > expectedThreads && System.nanoTime() < deadlineNanos) {
+            Thread.sleep(100);
+            threads = Thread.activeCount();
+        }
+        return threads;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ClusterNodeAddress> lastProvidedNodes(final ClusterDiscoveryOutput output) {
+        final ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(output, atLeastOnce()).provideCurrentNodes(captor.capture());
+        return captor.getValue();
+    }
+
+    private void writeConfiguration(final String configuration) throws Exception {
+        writeConfiguration(temporaryFolder.getRoot(), configuration);
+    }
+
+    private void writeConfiguration(final File extensionHomeFolder, final String configuration) throws Exception {
+        Files.writeString(new File(extensionHomeFolder, ConfigurationReader.ETCD_CONFIG_FILE).toPath(),
+                "etcd-endpoint=127.0.0.1:" + etcd.getPort() + "\n" + configuration);
+    }
+
+    private EtcdDiscoveryCallback callback() {
+        return callback(temporaryFolder.getRoot());
+    }
+
+    private EtcdDiscoveryCallback callback(final File extensionHomeFolder) {
+        return new EtcdDiscoveryCallback(new EtcdClient(configurationReader(extensionHomeFolder)), () -> executor);
+    }
+
+    private static ConfigurationReader configurationReader(final File extensionHomeFolder) {
+        final ExtensionInformation extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(extensionHomeFolder);
+        return new ConfigurationReader(extensionInformation);
+    }
+
+    private static ClusterDiscoveryInput input(final String clusterId, final int port) {
+        final ClusterDiscoveryInput input = mock(ClusterDiscoveryInput.class);
+        when(input.getOwnClusterId()).thenReturn(clusterId);
+        when(input.getOwnAddress()).thenReturn(new ClusterNodeAddress("127.0.0.1", port));
+        return input;
+    }
+}
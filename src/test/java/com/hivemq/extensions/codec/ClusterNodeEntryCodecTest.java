@@ -0,0 +1,97 @@
+package com.hivemq.extensions.codec;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClusterNodeEntryCodecTest {
+
+    private final ClusterNodeEntry clusterNodeEntry = new ClusterNodeEntry("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+    private final ClusterNodeEntry labeledEntry = new ClusterNodeEntry("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800), "cluster1", "zone-a", "");
+
+    @Test
+    public void test_binary_round_trip() {
+        final ByteString value = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(clusterNodeEntry);
+        Assert.assertEquals(clusterNodeEntry.toString(), ClusterNodeEntryCodecs.decode(value).toString());
+    }
+
+    @Test
+    public void test_json_round_trip() {
+        final ByteString value = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.JSON).encode(clusterNodeEntry);
+        Assert.assertEquals(clusterNodeEntry.toString(), ClusterNodeEntryCodecs.decode(value).toString());
+    }
+
+    @Test
+    public void test_binary_round_trip_with_topology() {
+        final ByteString value = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(labeledEntry);
+        final ClusterNodeEntry decoded = ClusterNodeEntryCodecs.decode(value);
+        Assert.assertEquals(labeledEntry.toString(), decoded.toString());
+        Assert.assertEquals("zone-a", decoded.getZone());
+        Assert.assertNull(decoded.getRack());
+    }
+
+    @Test
+    public void test_json_round_trip_with_topology() {
+        final ByteString value = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.JSON).encode(labeledEntry);
+        Assert.assertEquals(labeledEntry.toString(), ClusterNodeEntryCodecs.decode(value).toString());
+    }
+
+    @Test
+    public void test_binary_without_topology_unchanged_size() {
+        final ByteString value = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(clusterNodeEntry);
+        final ByteString labeledValue = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(labeledEntry);
+        Assert.assertEquals(labeledValue.substring(0, value.size()), value);
+        Assert.assertNull(ClusterNodeEntryCodecs.decode(value).getZone());
+    }
+
+    @Test
+    public void test_decode_legacy_json() {
+        final ByteString value = ByteString.copyFromUtf8(clusterNodeEntry.toJson());
+        Assert.assertEquals(clusterNodeEntry.toString(), ClusterNodeEntryCodecs.decode(value).toString());
+    }
+
+    @Test
+    public void test_binary_smaller_than_json() {
+        final int binarySize = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(clusterNodeEntry).size();
+        final int jsonSize = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.JSON).encode(clusterNodeEntry).size();
+        Assert.assertTrue(binarySize < jsonSize);
+    }
+
+    @Test
+    public void test_unknown_format() {
+        Assert.assertNull(ClusterNodeEntryCodecs.forFormat("xml"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_decode_empty() {
+        ClusterNodeEntryCodecs.decode(ByteString.EMPTY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_decode_blank_json() {
+        ClusterNodeEntryCodecs.decode(ByteString.copyFromUtf8("  "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_decode_json_without_cluster_id() {
+        ClusterNodeEntryCodecs.decode(ByteString.copyFromUtf8("{\"clusterNodeIP\":\"127.0.0.1\",\"clusterNodePort\":7800}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_decode_json_without_address() {
+        ClusterNodeEntryCodecs.decode(ByteString.copyFromUtf8("{\"clusterId\":\"ABCD12\"}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_decode_malformed_json() {
+        ClusterNodeEntryCodecs.decode(ByteString.copyFromUtf8("{\"clusterId\":"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_decode_truncated_binary() {
+        final ByteString value = ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(clusterNodeEntry);
+        ClusterNodeEntryCodecs.decode(value.substring(0, 4));
+    }
+}
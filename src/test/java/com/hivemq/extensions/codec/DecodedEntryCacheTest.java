@@ -0,0 +1,55 @@
+package com.hivemq.extensions.codec;
+
+import com.google.protobuf.ByteString;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.config.ClusterNodeEntry;
+import com.ibm.etcd.api.KeyValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class DecodedEntryCacheTest {
+
+    private final DecodedEntryCache cache = new DecodedEntryCache();
+
+    @Test
+    public void test_same_revision_not_decoded_again() {
+        final KeyValue keyValue = keyValue("discovery/node1", 7800, 5);
+        final ClusterNodeEntry entry = cache.decode(keyValue);
+        Assert.assertSame(entry, cache.decode(keyValue));
+    }
+
+    @Test
+    public void test_new_revision_decoded_again() {
+        final ClusterNodeEntry entry = cache.decode(keyValue("discovery/node1", 7800, 5));
+        final ClusterNodeEntry changedEntry = cache.decode(keyValue("discovery/node1", 7801, 6));
+        Assert.assertNotSame(entry, changedEntry);
+        Assert.assertEquals(7801, changedEntry.getClusterNodeAddress().getPort());
+    }
+
+    @Test
+    public void test_retain_evicts_deleted_keys() {
+        final KeyValue node1 = keyValue("discovery/node1", 7800, 5);
+        final KeyValue node2 = keyValue("discovery/node2", 7801, 6);
+        cache.decode(node1);
+        cache.decode(node2);
+
+        cache.retain(List.of(node2.getKey()));
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_invalid_entry_fails() {
+        cache.decode(KeyValue.newBuilder().setKey(ByteString.copyFromUtf8("discovery/node1")).setModRevision(5).build());
+    }
+
+    private static KeyValue keyValue(final String key, final int port, final long modRevision) {
+        final ClusterNodeEntry entry = new ClusterNodeEntry(key, new ClusterNodeAddress("127.0.0.1", port));
+        return KeyValue.newBuilder()
+                .setKey(ByteString.copyFromUtf8(key))
+                .setValue(ClusterNodeEntryCodecs.forFormat(ClusterNodeEntryCodecs.BINARY).encode(entry))
+                .setModRevision(modRevision)
+                .build();
+    }
+}
@@ -0,0 +1,75 @@
+package com.hivemq.extensions.config;
+
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConfigurationReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ConfigurationReader configurationReader;
+    private File propertiesFile;
+
+    @Before
+    public void setUp() {
+        final ExtensionInformation extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(temporaryFolder.getRoot());
+        configurationReader = new ConfigurationReader(extensionInformation);
+        propertiesFile = new File(temporaryFolder.getRoot(), ConfigurationReader.ETCD_CONFIG_FILE);
+    }
+
+    @Test
+    public void test_read_configuration_missing_file() {
+        Assert.assertNull(configurationReader.readConfiguration());
+    }
+
+    @Test
+    public void test_read_configuration_key_with_slash() throws Exception {
+        Files.writeString(propertiesFile.toPath(), "etcd-endpoint=localhost\nkey=/test\n");
+        Assert.assertEquals("/test/", configurationReader.readConfiguration().getKey());
+    }
+
+    @Test
+    public void test_read_configuration_unchanged_file_cached() throws Exception {
+        Files.writeString(propertiesFile.toPath(), "etcd-endpoint=localhost\n");
+        final EtcdConfig etcdConfig = configurationReader.readConfiguration();
+        Assert.assertNotNull(etcdConfig);
+        Assert.assertSame(etcdConfig, configurationReader.readConfiguration());
+    }
+
+    @Test
+    public void test_read_configuration_changed_file_reloaded() throws Exception {
+        Files.writeString(propertiesFile.toPath(), "etcd-endpoint=localhost\n");
+        final EtcdConfig etcdConfig = configurationReader.readConfiguration();
+
+        Files.writeString(propertiesFile.toPath(), "etcd-endpoint=otherhost\n");
+        Assert.assertTrue(propertiesFile.setLastModified(propertiesFile.lastModified() + 1_000));
+
+        final EtcdConfig newEtcdConfig = configurationReader.readConfiguration();
+        Assert.assertNotSame(etcdConfig, newEtcdConfig);
+        Assert.assertEquals("otherhost", newEtcdConfig.getEndpoint());
+    }
+
+    @Test
+    public void test_read_configuration_lease_without_expiration_invalid() throws Exception {
+        Files.writeString(propertiesFile.toPath(), "etcd-endpoint=localhost\nuse-lease=true\nexpiration=0\nupdate-interval=0\n");
+        Assert.assertNull(configurationReader.readConfiguration());
+    }
+
+    @Test
+    public void test_read_configuration_negative_channel_threads_invalid() throws Exception {
+        Files.writeString(propertiesFile.toPath(), "etcd-endpoint=localhost\nchannel-threads=-1\n");
+        Assert.assertNull(configurationReader.readConfiguration());
+    }
+}
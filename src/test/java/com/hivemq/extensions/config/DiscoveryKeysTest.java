@@ -0,0 +1,42 @@
+package com.hivemq.extensions.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DiscoveryKeysTest {
+
+    @Test
+    public void test_keys_without_topology() {
+        final EtcdConfig etcdConfig = etcdConfig("", "");
+        Assert.assertEquals("/hivemq/discovery/", DiscoveryKeys.getClusterPrefix(etcdConfig));
+        Assert.assertEquals("/hivemq/discovery/node1", DiscoveryKeys.getEntryKey(etcdConfig, "node1"));
+        Assert.assertEquals("/hivemq/discovery.janitor", DiscoveryKeys.getJanitorKey(etcdConfig));
+    }
+
+    @Test
+    public void test_keys_with_topology() {
+        final EtcdConfig etcdConfig = etcdConfig("cluster1", "zone-a");
+        Assert.assertEquals("/hivemq/discovery/_cluster/cluster1/", DiscoveryKeys.getClusterPrefix(etcdConfig));
+        Assert.assertEquals("/hivemq/discovery/_cluster/cluster1/_zone/zone-a/node1", DiscoveryKeys.getEntryKey(etcdConfig, "node1"));
+        Assert.assertEquals("/hivemq/discovery.janitor.cluster1", DiscoveryKeys.getJanitorKey(etcdConfig));
+    }
+
+    @Test
+    public void test_cluster_name_and_zone_do_not_collide() {
+        final String clusterPrefix = DiscoveryKeys.getClusterPrefix(etcdConfig("a", ""));
+        final String zoneEntryKey = DiscoveryKeys.getEntryKey(etcdConfig("", "a"), "node1");
+        Assert.assertFalse(zoneEntryKey.startsWith(clusterPrefix));
+        Assert.assertFalse(DiscoveryKeys.getEntryKey(etcdConfig("ab", ""), "node1").startsWith(clusterPrefix));
+    }
+
+    private static EtcdConfig etcdConfig(final String clusterName, final String zone) {
+        final EtcdConfig etcdConfig = mock(EtcdConfig.class);
+        when(etcdConfig.getKey()).thenReturn("/hivemq/discovery/");
+        when(etcdConfig.getClusterName()).thenReturn(clusterName);
+        when(etcdConfig.getZone()).thenReturn(zone);
+        return etcdConfig;
+    }
+}
@@ -0,0 +1,39 @@
+package com.hivemq.extensions.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class EtcdEndpointsTest {
+
+    @Test
+    public void test_single_endpoint_default_port() {
+        Assert.assertEquals(List.of("etcd:2379"), EtcdEndpoints.parse("etcd", 2379));
+    }
+
+    @Test
+    public void test_multiple_endpoints_own_ports() {
+        Assert.assertEquals(List.of("etcd-1:2379", "etcd-2:4001", "etcd-3:2379"), EtcdEndpoints.parse("etcd-1, etcd-2:4001,etcd-3", 2379));
+    }
+
+    @Test
+    public void test_ipv6_endpoints() {
+        Assert.assertEquals(List.of("[::1]:2379", "[::2]:4001"), EtcdEndpoints.parse("[::1],[::2]:4001", 2379));
+    }
+
+    @Test
+    public void test_unbracketed_ipv6_endpoints_bracketed() {
+        Assert.assertEquals(List.of("[::1]:2379", "[fe80::1:2]:2379"), EtcdEndpoints.parse("::1, fe80::1:2", 2379));
+    }
+
+    @Test
+    public void test_blank_endpoints_ignored() {
+        Assert.assertTrue(EtcdEndpoints.parse(" , ", 2379).isEmpty());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void test_endpoints_null() {
+        EtcdEndpoints.parse(null, 2379);
+    }
+}
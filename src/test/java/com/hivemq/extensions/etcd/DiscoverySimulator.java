@@ -0,0 +1,225 @@
+package com.hivemq.extensions.etcd;
+
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.EtcdClient;
+import com.hivemq.extensions.callbacks.EtcdDiscoveryCallback;
+import com.hivemq.extensions.config.ConfigurationReader;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Runs many discovery callbacks against an {@link InProcessEtcd} on a single machine and reports etcd request rates,
+ * reload latency percentiles and how long the nodes need to see each other again after joins and crashes.
+ * <p>
+ * Simulation parameters are read from system properties:
+ * <ul>
+ * <li>{@code nodes} - number of nodes started at the beginning (default 100)</li>
+ * <li>{@code reloadIntervalMillis} - time between two reloads of a node (default 1000)</li>
+ * <li>{@code durationSeconds} - duration of the simulation (default 60)</li>
+ * <li>{@code churnPerMinute} - nodes crashing and replaced by a new node per minute (default 0)</li>
+ * <li>{@code latencyMillis} - latency added to every etcd response (default 0)</li>
+ * <li>{@code failureRate} - fraction of etcd requests failing (default 0)</li>
+ * <li>{@code massFailureAtSeconds} / {@code massFailureFraction} - crash a fraction of all nodes at once (default off)</li>
+ * </ul>
+ * Program arguments are added as lines to the extension configuration, e.g. {@code use-lease=true expiration=10}.
+ */
+public class DiscoverySimulator {
+
+    private final int reloadIntervalMillis = Integer.getInteger("reloadIntervalMillis", 1_000);
+    private final InProcessEtcd etcd;
+    private final File extensionHomeFolder;
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+    private final List<SimulatedNode> liveNodes = Collections.synchronizedList(new ArrayList<>());
+    private final ConcurrentLinkedQueue<Long> reloadNanos = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> convergenceMillis = new ConcurrentLinkedQueue<>();
+    private int nextNodeId;
+
+    public DiscoverySimulator(final InProcessEtcd etcd, final List<String> configuration) throws Exception {
+        this.etcd = etcd;
+        this.extensionHomeFolder = Files.createTempDirectory("etcd-discovery-simulation").toFile();
+        final List<String> lines = new ArrayList<>();
+        lines.add("etcd-endpoint=127.0.0.1:" + etcd.getPort());
+        lines.add("expiration=10");
+        lines.add("update-interval=3");
+        lines.addAll(configuration);
+        Files.write(new File(extensionHomeFolder, ConfigurationReader.ETCD_CONFIG_FILE).toPath(), lines);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        try (final InProcessEtcd etcd = new InProcessEtcd()) {
+            etcd.setLatencyMillis(Long.getLong("latencyMillis", 0));
+            etcd.setFailureRate(Double.parseDouble(System.getProperty("failureRate", "0")));
+            new DiscoverySimulator(etcd, List.of(args)).run();
+        }
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        final int nodes = Integer.getInteger("nodes", 100);
+        final int durationSeconds = Integer.getInteger("durationSeconds", 60);
+        final int churnPerMinute = Integer.getInteger("churnPerMinute", 0);
+        final int massFailureAtSeconds = Integer.getInteger("massFailureAtSeconds", -1);
+        final double massFailureFraction = Double.parseDouble(System.getProperty("massFailureFraction", "0.5"));
+
+        for (int i = 0; i < nodes; i++) {
+            startNode();
+        }
+        measureConvergence("start of " + nodes + " nodes");
+
+        if (churnPerMinute > 0) {
+            final long churnIntervalMillis = 60_000 / churnPerMinute;
+            executor.scheduleAtFixedRate(() -> {
+                crashRandomNodes(1);
+                startNode();
+            }, churnIntervalMillis, churnIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        if (massFailureAtSeconds >= 0) {
+            executor.schedule(() -> {
+                crashRandomNodes((int) (liveNodes.size() * massFailureFraction));
+                measureConvergence("mass failure");
+            }, massFailureAtSeconds, TimeUnit.SECONDS);
+        }
+
+        final Map<String, Long> requestCountsAtStart = etcd.getRequestCounts();
+        final long startMillis = System.currentTimeMillis();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        report(requestCountsAtStart, (System.currentTimeMillis() - startMillis) / 1_000.0);
+        executor.shutdownNow();
+    }
+
+    private void startNode() {
+        final SimulatedNode node = new SimulatedNode("node" + nextNodeId++);
+        node.start();
+        liveNodes.add(node);
+    }
+
+    private void crashRandomNodes(final int count) {
+        for (int i = 0; i < count && !liveNodes.isEmpty(); i++) {
+            liveNodes.remove(ThreadLocalRandom.current().nextInt(liveNodes.size())).crash();
+        }
+    }
+
+    /**
+     * Waits in the background until every live node provides exactly the addresses of all live nodes.
+     */
+    private void measureConvergence(final String event) {
+        final long startMillis = System.currentTimeMillis();
+        final AtomicReference<ScheduledFuture<?>> check = new AtomicReference<>();
+        check.set(executor.scheduleWithFixedDelay(() -> {
+            if (isConverged()) {
+                final long millis = System.currentTimeMillis() - startMillis;
+                convergenceMillis.add(millis);
+                System.out.println("Converged " + millis + " ms after " + event);
+                check.get().cancel(false);
+            }
+        }, 0, 50, TimeUnit.MILLISECONDS));
+    }
+
+    private boolean isConverged() {
+        final List<SimulatedNode> nodes;
+        synchronized (liveNodes) {
+            nodes = new ArrayList<>(liveNodes);
+        }
+        for (final SimulatedNode node : nodes) {
+            final List<ClusterNodeAddress> provided = node.providedNodes.get();
+            if (provided == null || provided.size() != nodes.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void report(final Map<String, Long> requestCountsAtStart, final double seconds) {
+        System.out.println("Requests per second:");
+        etcd.getRequestCounts().forEach((method, count) ->
+                System.out.printf("  %-16s %10.1f%n", method, (count - requestCountsAtStart.getOrDefault(method, 0L)) / seconds));
+
+        final List<Long> latencies = new ArrayList<>(reloadNanos);
+        Collections.sort(latencies);
+        System.out.printf("Reload latency of %d reloads: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n", latencies.size(),
+                percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99), percentile(latencies, 1.0));
+        System.out.println("Convergence times in ms: " + convergenceMillis);
+        System.out.println("Live nodes: " + liveNodes.size() + ", keys in etcd: " + etcd.getKeyCount());
+    }
+
+    private static double percentile(final List<Long> sortedNanos, final double percentile) {
+        if (sortedNanos.isEmpty()) {
+            return 0;
+        }
+        final int index = (int) Math.ceil(percentile * sortedNanos.size()) - 1;
+        return sortedNanos.get(Math.max(0, index)) / 1_000_000.0;
+    }
+
+    private class SimulatedNode {
+
+        // an own heartbeat executor per node, so a crash can stop the heartbeat without deregistering the node
+        private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
+        private final EtcdClient etcdClient;
+        private final EtcdDiscoveryCallback callback;
+        private final ClusterDiscoveryInput input;
+        private final ClusterDiscoveryOutput output;
+        private final AtomicReference<List<ClusterNodeAddress>> providedNodes = new AtomicReference<>();
+        private ScheduledFuture<?> reloadTask;
+
+        SimulatedNode(final String clusterId) {
+            final ExtensionInformation extensionInformation = mock(ExtensionInformation.class);
+            when(extensionInformation.getExtensionHomeFolder()).thenReturn(extensionHomeFolder);
+            etcdClient = new EtcdClient(new ConfigurationReader(extensionInformation));
+            callback = new EtcdDiscoveryCallback(etcdClient, () -> heartbeatExecutor);
+
+            final int nodeNumber = Integer.parseInt(clusterId.substring(4));
+            input = mock(ClusterDiscoveryInput.class, withSettings().stubOnly());
+            when(input.getOwnClusterId()).thenReturn(clusterId);
+            when(input.getOwnAddress()).thenReturn(new ClusterNodeAddress("10." + (nodeNumber / 65536) + "." + (nodeNumber / 256 % 256) + "." + (nodeNumber % 256), 7800));
+            output = mock(ClusterDiscoveryOutput.class, withSettings().stubOnly());
+            doAnswer(invocation -> {
+                @SuppressWarnings("unchecked")
+                final List<ClusterNodeAddress> nodes = (List<ClusterNodeAddress>) invocation.getArguments()[0];
+                providedNodes.set(nodes);
+                return null;
+            }).when(output).provideCurrentNodes(anyListOf(ClusterNodeAddress.class));
+        }
+
+        void start() {
+            executor.execute(() -> callback.init(input, output));
+            final long initialDelay = ThreadLocalRandom.current().nextLong(reloadIntervalMillis);
+            reloadTask = executor.scheduleAtFixedRate(() -> {
+                final long start = System.nanoTime();
+                callback.reload(input, output);
+                reloadNanos.add(System.nanoTime() - start);
+            }, initialDelay, reloadIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Stops the node without deregistering it, its entry has to expire.
+         */
+        void crash() {
+            reloadTask.cancel(false);
+            heartbeatExecutor.shutdownNow();
+            if (etcdClient.getLeaseId() != 0) {
+                etcd.blockKeepAlive(etcdClient.getLeaseId());
+            }
+        }
+    }
+}
@@ -0,0 +1,667 @@
+package com.hivemq.extensions.etcd;
+
+import com.google.protobuf.ByteString;
+import com.ibm.etcd.api.Compare;
+import com.ibm.etcd.api.DeleteRangeRequest;
+import com.ibm.etcd.api.DeleteRangeResponse;
+import com.ibm.etcd.api.Event;
+import com.ibm.etcd.api.KVGrpc;
+import com.ibm.etcd.api.KeyValue;
+import com.ibm.etcd.api.LeaseGrantRequest;
+import com.ibm.etcd.api.LeaseGrantResponse;
+import com.ibm.etcd.api.LeaseGrpc;
+import com.ibm.etcd.api.LeaseKeepAliveRequest;
+import com.ibm.etcd.api.LeaseKeepAliveResponse;
+import com.ibm.etcd.api.LeaseRevokeRequest;
+import com.ibm.etcd.api.LeaseRevokeResponse;
+import com.ibm.etcd.api.LeaseTimeToLiveRequest;
+import com.ibm.etcd.api.LeaseTimeToLiveResponse;
+import com.ibm.etcd.api.PutRequest;
+import com.ibm.etcd.api.PutResponse;
+import com.ibm.etcd.api.RangeRequest;
+import com.ibm.etcd.api.RangeResponse;
+import com.ibm.etcd.api.RequestOp;
+import com.ibm.etcd.api.ResponseHeader;
+import com.ibm.etcd.api.ResponseOp;
+import com.ibm.etcd.api.TxnRequest;
+import com.ibm.etcd.api.TxnResponse;
+import com.ibm.etcd.api.WatchCreateRequest;
+import com.ibm.etcd.api.WatchGrpc;
+import com.ibm.etcd.api.WatchRequest;
+import com.ibm.etcd.api.WatchResponse;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single process stand-in for an etcd cluster, implementing the parts of the KV, Lease and Watch services used by
+ * the extension on a local gRPC server.
+ * <p>
+ * Transactions are limited to the default of 128 operations per branch like etcd does.
+ * <p>
+ * Differences to etcd: all revisions of every key are kept for range requests at a past revision, only the last
+ * {@link #HISTORY_SIZE} events are kept for watches and auth, compaction and the maintenance services are not
+ * implemented.
+ * <p>
+ * Latency and failures can be injected and every request is counted per method. Keys only and serializable range
+ * requests are additionally counted as {@code rangeKeysOnly} and {@code rangeSerializable}.
+ */
+public class InProcessEtcd implements AutoCloseable {
+
+    private static final int HISTORY_SIZE = 100_000;
+    // the default of etcd's --max-txn-ops
+    private static final int MAX_TXN_OPS = 128;
+    private static final ByteString ZERO_BYTE = ByteString.copyFrom(new byte[]{0});
+    private static final Comparator<ByteString> KEY_ORDER = (left, right) -> {
+        final int length = Math.min(left.size(), right.size());
+        for (int i = 0; i < length; i++) {
+            final int compared = Integer.compare(left.byteAt(i) & 0xff, right.byteAt(i) & 0xff);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(left.size(), right.size());
+    };
+
+    private final Object lock = new Object();
+    private final NavigableMap<ByteString, KeyValue> keyValues = new TreeMap<>(KEY_ORDER);
+    // every revision of a key, null marks a delete
+    private final NavigableMap<ByteString, TreeMap<Long, KeyValue>> keyRevisions = new TreeMap<>(KEY_ORDER);
+    private final Map<Long, Lease> leases = new HashMap<>();
+    private final Deque<Event> history = new ArrayDeque<>();
+    private final List<Watcher> watchers = new ArrayList<>();
+    private final Set<Long> blockedLeases = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Server server;
+
+    private long revision = 1;
+    private long nextLeaseId = 1;
+    private long nextWatchId = 1;
+
+    private volatile long latencyMillis;
+    private volatile double failureRate;
+    private volatile boolean available = true;
+
+    public InProcessEtcd() throws IOException {
+        server = ServerBuilder.forPort(0)
+                .addService(new KvService())
+                .addService(new LeaseService())
+                .addService(new WatchService())
+                .build()
+                .start();
+        scheduler.scheduleAtFixedRate(this::expireLeases, 100, 100, TimeUnit.MILLISECONDS);
+    }
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        scheduler.shutdownNow();
+        server.shutdownNow();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Delays every unary response by the given time.
+     */
+    public void setLatencyMillis(final long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Fails the given fraction of unary requests with {@link Status#UNAVAILABLE}.
+     */
+    public void setFailureRate(final double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Fails all unary requests while unavailable.
+     */
+    public void setAvailable(final boolean available) {
+        this.available = available;
+    }
+
+    /**
+     * Ignores keep alives of the lease, so it expires like the lease of a crashed client.
+     */
+    public void blockKeepAlive(final long leaseId) {
+        blockedLeases.add(leaseId);
+    }
+
+    public long getRequestCount(final String method) {
+        final LongAdder count = requestCounts.get(method);
+        return count == null ? 0 : count.sum();
+    }
+
+    public Map<String, Long> getRequestCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        requestCounts.forEach((method, count) -> counts.put(method, count.sum()));
+        return counts;
+    }
+
+    public int getKeyCount() {
+        synchronized (lock) {
+            return keyValues.size();
+        }
+    }
+
+    /**
+     * Writes the key directly, without a request, e.g. while the extension is in the middle of a paged read.
+     */
+    public void put(final ByteString key, final ByteString value) {
+        synchronized (lock) {
+            revision++;
+            doPut(PutRequest.newBuilder().setKey(key).setValue(value).build(), revision);
+        }
+    }
+
+    /**
+     * Deletes the key directly, without a request.
+     */
+    public void delete(final ByteString key) {
+        synchronized (lock) {
+            revision++;
+            doDelete(DeleteRangeRequest.newBuilder().setKey(key).build(), revision);
+        }
+    }
+
+    private void count(final String method) {
+        requestCounts.computeIfAbsent(method, ignored -> new LongAdder()).increment();
+    }
+
+    private <T> void respond(final StreamObserver<T> observer, final T response) {
+        final Runnable send = () -> {
+            if (!available || (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate)) {
+                observer.onError(Status.UNAVAILABLE.withDescription("injected failure").asRuntimeException());
+                return;
+            }
+            observer.onNext(response);
+            observer.onCompleted();
+        };
+        if (latencyMillis > 0) {
+            scheduler.schedule(send, latencyMillis, TimeUnit.MILLISECONDS);
+        } else {
+            send.run();
+        }
+    }
+
+    private ResponseHeader header() {
+        return ResponseHeader.newBuilder().setClusterId(1).setMemberId(1).setRaftTerm(1).setRevision(revision).build();
+    }
+
+    // all methods below have to be called while holding the lock
+
+    private static <V> NavigableMap<ByteString, V> range(final NavigableMap<ByteString, V> map, final ByteString key, final ByteString rangeEnd) {
+        if (rangeEnd.isEmpty()) {
+            final NavigableMap<ByteString, V> single = new TreeMap<>(KEY_ORDER);
+            final V value = map.get(key);
+            if (value != null) {
+                single.put(key, value);
+            }
+            return single;
+        }
+        if (rangeEnd.equals(ZERO_BYTE)) {
+            return map.tailMap(key, true);
+        }
+        return map.subMap(key, true, rangeEnd, false);
+    }
+
+    private NavigableMap<ByteString, KeyValue> rangeAt(final ByteString key, final ByteString rangeEnd, final long atRevision) {
+        final NavigableMap<ByteString, KeyValue> range = new TreeMap<>(KEY_ORDER);
+        range(keyRevisions, key, rangeEnd).forEach((rangeKey, revisions) -> {
+            final Map.Entry<Long, KeyValue> keyRevision = revisions.floorEntry(atRevision);
+            if (keyRevision != null && keyRevision.getValue() != null) {
+                range.put(rangeKey, keyRevision.getValue());
+            }
+        });
+        return range;
+    }
+
+    private RangeResponse doRange(final RangeRequest request) {
+        final NavigableMap<ByteString, KeyValue> range = request.getRevision() > 0 && request.getRevision() < revision
+                ? rangeAt(request.getKey(), request.getRangeEnd(), request.getRevision())
+                : range(keyValues, request.getKey(), request.getRangeEnd());
+        final RangeResponse.Builder response = RangeResponse.newBuilder().setCount(range.size());
+        if (request.getCountOnly()) {
+            return response.setHeader(header()).build();
+        }
+        long added = 0;
+        for (final KeyValue keyValue : range.values()) {
+            if (request.getLimit() > 0 && added == request.getLimit()) {
+                response.setMore(true);
+                break;
+            }
+            response.addKvs(request.getKeysOnly() ? keyValue.toBuilder().clearValue().build() : keyValue);
+            added++;
+        }
+        return response.setHeader(header()).build();
+    }
+
+    private PutResponse doPut(final PutRequest request, final long putRevision) {
+        final KeyValue previous = keyValues.get(request.getKey());
+        final KeyValue keyValue = KeyValue.newBuilder()
+                .setKey(request.getKey())
+                .setValue(request.getValue())
+                .setLease(request.getLease())
+                .setCreateRevision(previous == null ? putRevision : previous.getCreateRevision())
+                .setModRevision(putRevision)
+                .setVersion(previous == null ? 1 : previous.getVersion() + 1)
+                .build();
+        keyValues.put(request.getKey(), keyValue);
+        keyRevisions.computeIfAbsent(request.getKey(), ignored -> new TreeMap<>()).put(putRevision, keyValue);
+        if (previous != null && previous.getLease() != 0 && leases.containsKey(previous.getLease())) {
+            leases.get(previous.getLease()).keys.remove(request.getKey());
+        }
+        if (request.getLease() != 0 && leases.containsKey(request.getLease())) {
+            leases.get(request.getLease()).keys.add(request.getKey());
+        }
+        publish(Event.newBuilder().setType(Event.EventType.PUT).setKv(keyValue).build());
+        final PutResponse.Builder response = PutResponse.newBuilder();
+        if (request.getPrevKv() && previous != null) {
+            response.setPrevKv(previous);
+        }
+        return response.build();
+    }
+
+    private DeleteRangeResponse doDelete(final DeleteRangeRequest request, final long deleteRevision) {
+        final List<KeyValue> deleted = new ArrayList<>(range(keyValues, request.getKey(), request.getRangeEnd()).values());
+        for (final KeyValue keyValue : deleted) {
+            keyValues.remove(keyValue.getKey());
+            keyRevisions.get(keyValue.getKey()).put(deleteRevision, null);
+            publish(Event.newBuilder()
+                    .setType(Event.EventType.DELETE)
+                    .setKv(KeyValue.newBuilder().setKey(keyValue.getKey()).setModRevision(deleteRevision))
+                    .build());
+        }
+        final DeleteRangeResponse.Builder response = DeleteRangeResponse.newBuilder().setDeleted(deleted.size());
+        if (request.getPrevKv()) {
+            response.addAllPrevKvs(deleted);
+        }
+        return response.build();
+    }
+
+    private boolean evaluate(final Compare compare) {
+        final KeyValue keyValue = keyValues.get(compare.getKey());
+        final int compared;
+        switch (compare.getTarget()) {
+            case VERSION:
+                compared = Long.compare(keyValue == null ? 0 : keyValue.getVersion(), compare.getVersion());
+                break;
+            case CREATE:
+                compared = Long.compare(keyValue == null ? 0 : keyValue.getCreateRevision(), compare.getCreateRevision());
+                break;
+            case MOD:
+                compared = Long.compare(keyValue == null ? 0 : keyValue.getModRevision(), compare.getModRevision());
+                break;
+            case LEASE:
+                compared = Long.compare(keyValue == null ? 0 : keyValue.getLease(), compare.getLease());
+                break;
+            case VALUE:
+                if (keyValue == null) {
+                    return false;
+                }
+                compared = KEY_ORDER.compare(keyValue.getValue(), compare.getValue());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported compare target " + compare.getTarget());
+        }
+        switch (compare.getResult()) {
+            case EQUAL:
+                return compared == 0;
+            case NOT_EQUAL:
+                return compared != 0;
+            case GREATER:
+                return compared > 0;
+            case LESS:
+                return compared < 0;
+            default:
+                throw new IllegalArgumentException("Unsupported compare result " + compare.getResult());
+        }
+    }
+
+    private TxnResponse doTxn(final TxnRequest request) {
+        boolean succeeded = true;
+        for (final Compare compare : request.getCompareList()) {
+            succeeded &= evaluate(compare);
+        }
+        final List<RequestOp> operations = succeeded ? request.getSuccessList() : request.getFailureList();
+        final boolean writes = operations.stream().anyMatch(operation -> !operation.hasRequestRange());
+        final long txnRevision = writes ? revision + 1 : revision;
+
+        final TxnResponse.Builder response = TxnResponse.newBuilder().setSucceeded(succeeded);
+        for (final RequestOp operation : operations) {
+            if (operation.hasRequestRange()) {
+                response.addResponses(ResponseOp.newBuilder().setResponseRange(doRange(operation.getRequestRange())));
+            } else if (operation.hasRequestPut()) {
+                response.addResponses(ResponseOp.newBuilder().setResponsePut(doPut(operation.getRequestPut(), txnRevision)));
+            } else if (operation.hasRequestDeleteRange()) {
+                response.addResponses(ResponseOp.newBuilder().setResponseDeleteRange(doDelete(operation.getRequestDeleteRange(), txnRevision)));
+            }
+        }
+        revision = txnRevision;
+        return response.setHeader(header()).build();
+    }
+
+    private void revokeLease(final long leaseId) {
+        final Lease lease = leases.remove(leaseId);
+        if (lease == null) {
+            return;
+        }
+        revision++;
+        for (final ByteString key : lease.keys) {
+            final KeyValue keyValue = keyValues.get(key);
+            if (keyValue != null && keyValue.getLease() == leaseId) {
+                doDelete(DeleteRangeRequest.newBuilder().setKey(key).build(), revision);
+            }
+        }
+    }
+
+    private void expireLeases() {
+        synchronized (lock) {
+            final long now = System.currentTimeMillis();
+            final List<Long> expired = new ArrayList<>();
+            leases.forEach((leaseId, lease) -> {
+                if (lease.expiresAtMillis < now) {
+                    expired.add(leaseId);
+                }
+            });
+            expired.forEach(this::revokeLease);
+        }
+    }
+
+    private void publish(final Event event) {
+        history.addLast(event);
+        if (history.size() > HISTORY_SIZE) {
+            history.removeFirst();
+        }
+        for (final Watcher watcher : watchers) {
+            watcher.send(List.of(event));
+        }
+    }
+
+    private static class Lease {
+
+        private final long ttl;
+        private final Set<ByteString> keys = new HashSet<>();
+        private long expiresAtMillis;
+
+        Lease(final long ttl) {
+            this.ttl = ttl;
+            this.expiresAtMillis = System.currentTimeMillis() + ttl * 1_000;
+        }
+    }
+
+    private class Watcher {
+
+        private final long watchId;
+        private final ByteString key;
+        private final ByteString rangeEnd;
+        private final StreamObserver<WatchResponse> observer;
+
+        Watcher(final long watchId, final WatchCreateRequest request, final StreamObserver<WatchResponse> observer) {
+            this.watchId = watchId;
+            this.key = request.getKey();
+            this.rangeEnd = request.getRangeEnd();
+            this.observer = observer;
+        }
+
+        boolean matches(final ByteString eventKey) {
+            if (rangeEnd.isEmpty()) {
+                return key.equals(eventKey);
+            }
+            if (KEY_ORDER.compare(eventKey, key) < 0) {
+                return false;
+            }
+            return rangeEnd.equals(ZERO_BYTE) || KEY_ORDER.compare(eventKey, rangeEnd) < 0;
+        }
+
+        void send(final List<Event> events) {
+            final WatchResponse.Builder response = WatchResponse.newBuilder().setWatchId(watchId);
+            for (final Event event : events) {
+                if (matches(event.getKv().getKey())) {
+                    response.addEvents(event);
+                }
+            }
+            if (response.getEventsCount() > 0) {
+                synchronized (observer) {
+                    observer.onNext(response.setHeader(header()).build());
+                }
+            }
+        }
+    }
+
+    private class KvService extends KVGrpc.KVImplBase {
+
+        @Override
+        public void range(final RangeRequest request, final StreamObserver<RangeResponse> observer) {
+            count("range");
+            if (request.getKeysOnly()) {
+                count("rangeKeysOnly");
+            }
+            if (request.getSerializable()) {
+                count("rangeSerializable");
+            }
+            final RangeResponse response;
+            synchronized (lock) {
+                response = doRange(request);
+            }
+            respond(observer, response);
+        }
+
+        @Override
+        public void put(final PutRequest request, final StreamObserver<PutResponse> observer) {
+            count("put");
+            final PutResponse response;
+            synchronized (lock) {
+                revision++;
+                response = doPut(request, revision).toBuilder().setHeader(header()).build();
+            }
+            respond(observer, response);
+        }
+
+        @Override
+        public void deleteRange(final DeleteRangeRequest request, final StreamObserver<DeleteRangeResponse> observer) {
+            count("deleteRange");
+            final DeleteRangeResponse response;
+            synchronized (lock) {
+                final DeleteRangeResponse deleted = doDelete(request, revision + 1);
+                if (deleted.getDeleted() > 0) {
+                    revision++;
+                }
+                response = deleted.toBuilder().setHeader(header()).build();
+            }
+            respond(observer, response);
+        }
+
+        @Override
+        public void txn(final TxnRequest request, final StreamObserver<TxnResponse> observer) {
+            count("txn");
+            if (request.getCompareCount() > MAX_TXN_OPS || request.getSuccessCount() > MAX_TXN_OPS || request.getFailureCount() > MAX_TXN_OPS) {
+                observer.onError(Status.INVALID_ARGUMENT.withDescription("etcdserver: too many operations in txn request").asRuntimeException());
+                return;
+            }
+            final TxnResponse response;
+            synchronized (lock) {
+                response = doTxn(request);
+            }
+            respond(observer, response);
+        }
+    }
+
+    private class LeaseService extends LeaseGrpc.LeaseImplBase {
+
+        @Override
+        public void leaseGrant(final LeaseGrantRequest request, final StreamObserver<LeaseGrantResponse> observer) {
+            count("leaseGrant");
+            final LeaseGrantResponse response;
+            synchronized (lock) {
+                final long leaseId = request.getID() != 0 ? request.getID() : nextLeaseId++;
+                leases.put(leaseId, new Lease(request.getTTL()));
+                response = LeaseGrantResponse.newBuilder().setHeader(header()).setID(leaseId).setTTL(request.getTTL()).build();
+            }
+            respond(observer, response);
+        }
+
+        @Override
+        public void leaseRevoke(final LeaseRevokeRequest request, final StreamObserver<LeaseRevokeResponse> observer) {
+            count("leaseRevoke");
+            final LeaseRevokeResponse response;
+            synchronized (lock) {
+                revokeLease(request.getID());
+                response = LeaseRevokeResponse.newBuilder().setHeader(header()).build();
+            }
+            respond(observer, response);
+        }
+
+        @Override
+        public void leaseTimeToLive(final LeaseTimeToLiveRequest request, final StreamObserver<LeaseTimeToLiveResponse> observer) {
+            count("leaseTimeToLive");
+            final LeaseTimeToLiveResponse response;
+            synchronized (lock) {
+                final Lease lease = leases.get(request.getID());
+                final long ttl = lease == null ? -1 : Math.max(0, (lease.expiresAtMillis - System.currentTimeMillis()) / 1_000);
+                response = LeaseTimeToLiveResponse.newBuilder()
+                        .setHeader(header())
+                        .setID(request.getID())
+                        .setTTL(ttl)
+                        .setGrantedTTL(lease == null ? 0 : lease.ttl)
+                        .build();
+            }
+            respond(observer, response);
+        }
+
+        @Override
+        public StreamObserver<LeaseKeepAliveRequest> leaseKeepAlive(final StreamObserver<LeaseKeepAliveResponse> observer) {
+            return new StreamObserver<>() {
+                @Override
+                public void onNext(final LeaseKeepAliveRequest request) {
+                    count("leaseKeepAlive");
+                    final LeaseKeepAliveResponse response;
+                    synchronized (lock) {
+                        final Lease lease = leases.get(request.getID());
+                        long ttl = 0;
+                        if (lease != null && !blockedLeases.contains(request.getID())) {
+                            lease.expiresAtMillis = System.currentTimeMillis() + lease.ttl * 1_000;
+                            ttl = lease.ttl;
+                        }
+                        response = LeaseKeepAliveResponse.newBuilder().setHeader(header()).setID(request.getID()).setTTL(ttl).build();
+                    }
+                    synchronized (observer) {
+                        observer.onNext(response);
+                    }
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    synchronized (observer) {
+                        observer.onCompleted();
+                    }
+                }
+            };
+        }
+    }
+
+    private class WatchService extends WatchGrpc.WatchImplBase {
+
+        @Override
+        public StreamObserver<WatchRequest> watch(final StreamObserver<WatchResponse> observer) {
+            final List<Watcher> streamWatchers = new ArrayList<>();
+            return new StreamObserver<>() {
+                @Override
+                public void onNext(final WatchRequest request) {
+                    count("watch");
+                    synchronized (lock) {
+                        if (request.hasCreateRequest()) {
+                            create(request.getCreateRequest());
+                        } else if (request.hasCancelRequest()) {
+                            cancel(request.getCancelRequest().getWatchId());
+                        }
+                    }
+                }
+
+                private void create(final WatchCreateRequest request) {
+                    final Watcher watcher = new Watcher(nextWatchId++, request, observer);
+                    final long startRevision = request.getStartRevision();
+                    final long oldestRevision = history.isEmpty() ? revision : history.getFirst().getKv().getModRevision();
+                    synchronized (observer) {
+                        if (startRevision != 0 && startRevision < oldestRevision) {
+                            observer.onNext(WatchResponse.newBuilder()
+                                    .setHeader(header())
+                                    .setWatchId(watcher.watchId)
+                                    .setCreated(true)
+                                    .setCanceled(true)
+                                    .setCompactRevision(oldestRevision)
+                                    .build());
+                            return;
+                        }
+                        observer.onNext(WatchResponse.newBuilder().setHeader(header()).setWatchId(watcher.watchId).setCreated(true).build());
+                    }
+                    if (startRevision != 0) {
+                        final List<Event> missed = new ArrayList<>();
+                        for (final Event event : history) {
+                            if (event.getKv().getModRevision() >= startRevision) {
+                                missed.add(event);
+                            }
+                        }
+                        watcher.send(missed);
+                    }
+                    watchers.add(watcher);
+                    streamWatchers.add(watcher);
+                }
+
+                private void cancel(final long watchId) {
+                    streamWatchers.removeIf(watcher -> watcher.watchId == watchId && watchers.remove(watcher));
+                    synchronized (observer) {
+                        observer.onNext(WatchResponse.newBuilder().setHeader(header()).setWatchId(watchId).setCanceled(true).build());
+                    }
+                }
+
+                @Override
+                public void onError(final Throwable throwable) {
+                    synchronized (lock) {
+                        watchers.removeAll(streamWatchers);
+                    }
+                }
+
+                @Override
+                public void onCompleted() {
+                    synchronized (lock) {
+                        watchers.removeAll(streamWatchers);
+                    }
+                    synchronized (observer) {
+                        observer.onCompleted();
+                    }
+                }
+            };
+        }
+    }
+}
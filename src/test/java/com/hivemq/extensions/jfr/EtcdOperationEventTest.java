@@ -0,0 +1,70 @@
+package com.hivemq.extensions.jfr;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.protobuf.ByteString;
+import com.hivemq.extensions.DiscoveryMetrics;
+import com.hivemq.extensions.RequestExecutor;
+import com.hivemq.extensions.RequestLimiter;
+import com.ibm.etcd.api.KeyValue;
+import com.ibm.etcd.api.RangeResponse;
+import com.ibm.etcd.api.ResponseHeader;
+import io.grpc.Status;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class EtcdOperationEventTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test_events_recorded_for_every_attempt() throws Exception {
+        final RequestExecutor requestExecutor = new RequestExecutor(new DiscoveryMetrics());
+        final RangeResponse response = RangeResponse.newBuilder()
+                .setHeader(ResponseHeader.newBuilder().setRevision(42))
+                .addKvs(KeyValue.newBuilder().setKey(ByteString.copyFromUtf8("discovery/node1")))
+                .addKvs(KeyValue.newBuilder().setKey(ByteString.copyFromUtf8("discovery/node2")))
+                .setCount(2)
+                .build();
+
+        final Path dump = temporaryFolder.newFile("discovery.jfr").toPath();
+        try (final Recording recording = new Recording()) {
+            recording.enable(EtcdOperationEvent.class);
+            recording.start();
+            requestExecutor.execute(DiscoveryMetrics.RANGE, RequestLimiter.Priority.READ, () -> Futures.immediateFuture(response)).join();
+            requestExecutor.execute(DiscoveryMetrics.PUT, RequestLimiter.Priority.REGISTRATION, () -> Futures.immediateFailedFuture(Status.INVALID_ARGUMENT.asRuntimeException()))
+                    .exceptionally(throwable -> null).join();
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals("com.hivemq.extensions.etcd.EtcdOperation"))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .collect(Collectors.toList());
+        assertEquals(2, events.size());
+
+        final RecordedEvent range = events.get(0);
+        assertEquals(DiscoveryMetrics.RANGE, range.getString("operation"));
+        assertEquals(EtcdOperationEvent.SUCCESS, range.getString("outcome"));
+        assertEquals(1, range.getInt("attempt"));
+        assertEquals(2, range.getLong("keyCount"));
+        assertEquals(42, range.getLong("revision"));
+        assertEquals(response.getSerializedSize(), range.getLong("responseBytes"));
+
+        final RecordedEvent put = events.get(1);
+        assertEquals(DiscoveryMetrics.PUT, put.getString("operation"));
+        assertEquals(EtcdOperationEvent.ERROR, put.getString("outcome"));
+    }
+}